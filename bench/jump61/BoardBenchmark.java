@@ -0,0 +1,133 @@
+package jump61;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static jump61.Side.*;
+
+/** JMH benchmarks of the Board operations on the AI's hot paths.  Each
+ *  benchmark leaves its board as it found it, so that every invocation
+ *  measures the same work.
+ *  @author Desiree Garcia
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    /** Number of squares on a side of the benchmarked boards. */
+    @Param({ "4", "6", "10" })
+    public int size;
+
+    /** Set up a mid-game position, a square on which a move there
+     *  causes no jump, and a board in which a move causes a cascade over
+     *  every square. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        _board = randomPosition(size, 2 * size * size, SEED);
+        _copy = new Board(size);
+        _quiet = -1;
+        for (int n = 0; n < size * size && _quiet < 0; n += 1) {
+            if (_board.isLegal(_board.whoseMove(), n)
+                && !_board.critical(n)) {
+                _quiet = n;
+            }
+        }
+        _cascade = new Board(size);
+        for (int r = 1; r <= size; r += 1) {
+            for (int c = 1; c <= size; c += 1) {
+                _cascade.set(r, c, _cascade.neighbors(r, c),
+                             (r + c) % 2 == 0 ? RED : BLUE);
+            }
+        }
+        _cascade.set(size, size, 1, RED);
+    }
+
+    /** A move that causes no jumps, undone. */
+    @Benchmark
+    public int addSpotQuiet() {
+        _board.addSpot(_board.whoseMove(), _quiet);
+        _board.undo();
+        return _board.numPieces();
+    }
+
+    /** A move that causes a cascade over the entire board, undone. */
+    @Benchmark
+    public int addSpotCascade() {
+        _cascade.addSpot(RED, 0);
+        _cascade.undo();
+        return _cascade.numPieces();
+    }
+
+    /** Copying a position into an existing board. */
+    @Benchmark
+    public Board copy() {
+        _copy.copy(_board);
+        return _copy;
+    }
+
+    /** Constructing a copy of a position. */
+    @Benchmark
+    public Board construct() {
+        return new Board(_board);
+    }
+
+    /** Counting squares of one side. */
+    @Benchmark
+    public int numOfSide() {
+        return _board.numOfSide(RED);
+    }
+
+    /** Checking for a winner. */
+    @Benchmark
+    public Side getWinner() {
+        return _board.getWinner();
+    }
+
+    /** Return an N x N board reached from the initial position by
+     *  MOVES random legal moves chosen using SEED, skipping moves that
+     *  would end the game. */
+    static Board randomPosition(int N, int moves, long seed) {
+        Random random = new Random(seed);
+        Board board = new Board(N);
+        int[] legal = new int[N * N];
+        for (int k = 0; k < moves; k += 1) {
+            Side player = board.whoseMove();
+            int count = board.legalMoves(player, legal);
+            board.addSpot(player, legal[random.nextInt(count)]);
+            if (board.getWinner() != null) {
+                board.undo();
+            }
+        }
+        return new Board(board);
+    }
+
+    /** Seed for random positions. */
+    static final long SEED = 61;
+
+    /** Mid-game position. */
+    private Board _board;
+    /** Board into which _board is copied. */
+    private Board _copy;
+    /** Board on which a move at square #0 cascades over all squares. */
+    private Board _cascade;
+    /** A square of _board where the player to move may play without
+     *  causing a jump. */
+    private int _quiet;
+}
@@ -0,0 +1,68 @@
+package jump61;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of the search behind AI.getMove: one fixed-depth
+ *  iterative-deepening search from a mid-game position, starting with
+ *  an empty transposition table.  (AI.getMove itself searches for a
+ *  fixed time, so it is measured through its Searcher.)
+ *  @author Desiree Garcia
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    /** Number of squares on a side of the benchmarked boards. */
+    @Param({ "4", "6", "10" })
+    public int size;
+
+    /** Depth of the search. */
+    @Param({ "2", "4", "6" })
+    public int depth;
+
+    /** Set up the position to search. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        _board = BoardBenchmark.randomPosition(size, 2 * size * size,
+                                               BoardBenchmark.SEED);
+        _table = new TranspositionTable(TABLE_SIZE);
+    }
+
+    /** Empty the transposition table before each search. */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        _table.clear();
+    }
+
+    /** Search to the given depth, returning the move found. */
+    @Benchmark
+    public int search() {
+        Searcher searcher = new Searcher(_board, _table, 0);
+        return searcher.search(Long.MAX_VALUE, 1, depth);
+    }
+
+    /** Size of the transposition table, in megabytes. */
+    private static final int TABLE_SIZE = 16;
+
+    /** Position to search. */
+    private Board _board;
+    /** Transposition table used by the search. */
+    private TranspositionTable _table;
+}
@@ -2,10 +2,22 @@ package jump61;
 
 import java.util.ArrayList;
 import java.util.Random;
-
-import static jump61.Side.RED;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** An automated Player.
+ *
+ *  When its game's ponder() is on, an AI goes on searching after it
+ *  moves, in other threads, from the position its move leaves, so that
+ *  it thinks on its opponent's time.  The search stores what it finds
+ *  about the opponent's replies in the game's transposition table, keyed
+ *  by the positions they reach.  When the opponent has moved, the AI
+ *  stops pondering.  If the table then holds its position searched
+ *  deeper than its own last search reached, it plays the table's move at
+ *  once; otherwise it searches as usual, finding much of the tree
+ *  already in the table.
  *  @author P. N. Hilfinger
  */
 class AI extends Player {
@@ -23,162 +35,204 @@ class AI extends Player {
         Board board = getGame().getBoard();
 
         assert getSide() == board.whoseMove();
-        int choice = getMoveAI(getSide(), board);
+        stopThinking();
+        int choice = tablebaseMove();
+        if (choice < 0) {
+            choice = bookMove();
+        }
+        if (choice < 0) {
+            choice = ponderedMove();
+        }
+        if (choice < 0) {
+            choice = searchForMove();
+        }
+        if (getGame().ponder()) {
+            ponder(choice);
+        }
         getGame().reportMove(board.row(choice), board.col(choice));
         return String.format("%d %d", board.row(choice), board.col(choice));
     }
 
-    /** Return a move after searching the game tree to DEPTH>0 moves
-     *  from the current position. Assumes the game is not over. */
-    private int searchForMove() {
-        Board work = new Board(getBoard());
-        int value;
-        assert getSide() == work.whoseMove();
-        _foundMove = -1;
-        if (getSide() == RED) {
-            value = 0;
-        } else {
-            value = 0;
+    @Override
+    void stopThinking() {
+        if (_ponderers.isEmpty()) {
+            return;
         }
-        return _foundMove;
-    }
-
-
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _foundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _foundMove. If the game is over
-     *  on BOARD, does not set _foundMove. */
-    private int minMax(Board board, int depth, boolean saveMove,
-                       int sense, int alpha, int beta) {
-        return 0;
+        long nodes;
+        nodes = 0;
+        for (Searcher ponderer : _ponderers) {
+            ponderer.stop();
+        }
+        for (int k = 0; k < _ponderers.size(); k += 1) {
+            try {
+                _pondering.get(k).get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new Error("pondering failed", excp);
+            }
+            nodes += _ponderers.get(k).nodes();
+        }
+        Utils.debug(1, "pondered to depth %d (%d nodes)",
+                    _ponderers.get(0).depth(), nodes);
+        _ponderers.clear();
+        _pondering.clear();
     }
 
-    /** Return a heuristic estimate of the value of board position B.
-     *  Use WINNINGVALUE to indicate a win for Red and -WINNINGVALUE to
-     *  indicate a win for Blue. */
-    private int staticEval(Board b, int winningValue) {
-        return 0;
+    /** Start searching, in the background, the position reached by my
+     *  move to square #CHOICE, unless that ends the game.  The search
+     *  runs until stopThinking, sharing the game's transposition table,
+     *  in Main.threads() threads. */
+    private void ponder(int choice) {
+        Board position = new Board(getBoard());
+        position.addSpot(getSide(), choice);
+        if (position.getWinner() != null) {
+            return;
+        }
+        TranspositionTable table = getGame().table();
+        table.newSearch();
+        int numSquares = position.size() * position.size();
+        for (int k = 0; k < Main.threads(); k += 1) {
+            Searcher ponderer =
+                new Searcher(new Board(position), table,
+                             k == 0 ? 0 : _random.nextInt(numSquares));
+            int firstDepth = 1 + k % 2;
+            _ponderers.add(ponderer);
+            _pondering.add(helperPool().submit(
+                () -> ponderer.search(Long.MAX_VALUE, firstDepth)));
+        }
     }
 
-
-
-
-    /** Gets the index of the square that produces the best move
-     * for the AI.
-     * @param player = side player is.
-     * @param b = current board.
-     * @return integer giving best choice for a move.
-     * */
-    private int getMoveAI(Side player, Board b) {
-        int choice;
-        if (player == RED) {
-            aiPiece(player, b, _aiPiecesRed);
-            choice = moveHelper(player, b, _aiPiecesRed);
-            aiPiece(player, b, _aiPiecesRed);
-        } else {
-            aiPiece(player, b, _aiPiecesBlue);
-            choice = moveHelper(player, b, _aiPiecesBlue);
-            aiPiece(player, b, _aiPiecesBlue);
+    /** Return the move from the current position found by pondering,
+     *  if pondering is on and the game's transposition table holds the
+     *  exact value of the position from a search deeper than my last,
+     *  and otherwise -1.  A bound proves only that its move was good
+     *  enough for some search window, and the table is shared with my
+     *  opponent, so other entries are left to searchForMove, which
+     *  starts from them anyway. */
+    private int ponderedMove() {
+        Board board = getBoard();
+        if (!getGame().ponder() || _lastDepth == 0) {
+            return -1;
         }
-        return choice;
+        long entry = getGame().table().probe(board.positionKey());
+        if (entry == TranspositionTable.MISS
+            || TranspositionTable.depth(entry) <= _lastDepth
+            || TranspositionTable.bound(entry) != TranspositionTable.EXACT) {
+            return -1;
+        }
+        int move = TranspositionTable.move(entry);
+        if (!board.exists(move) || !board.isLegal(board.whoseMove(), move)) {
+            return -1;
+        }
+        Utils.debug(1, "%s: from pondering, depth %d", board.moveString(move),
+                    TranspositionTable.depth(entry));
+        return move;
     }
 
-
-
-    /** Finds the best possible move for the AI.
-     * @param player = side player is.
-     * @param board = current board.
-     * @param ai = current spaces ai has.
-     * @return integer giving best choice for a move.
-     * */
-    private int moveHelper(Side player, Board board, ArrayList<Integer> ai) {
-        int choice = -1;
-        int value, bestValue = 0;
-        if (board.numOfSide(player) == 0) {
-            return availableCorner(player, board);
+    /** Return a best move from the current position according to
+     *  Main.tablebase(), or -1 if there is no tablebase or the position
+     *  is not in it. */
+    private int tablebaseMove() {
+        Tablebase tablebase = Main.tablebase();
+        int move = tablebase == null ? -1 : tablebase.bestMove(getBoard());
+        if (move >= 0) {
+            Utils.debug(1, "%s: from tablebase",
+                        getBoard().moveString(move));
         }
-        Board b = new Board(board.size());
-        b.copy(board);
-        for (int s : ai) {
-            b.addSpot(player, s);
-
-            value = b.numOfSide(player);
-            b.undo();
-
-            if (value > bestValue) {
-                bestValue = value;
-                choice = s;
-            }
+        return move;
+    }
 
-            for (int n : b.neighborIndexes(board.row(s), board.col(s))) {
-                if (!b.isLegal(player, n) || board.get(n).getSide() == player) {
-                    continue;
-                }
-                b.addSpot(player, n);
-                value = b.numOfSide(player);
-                b.undo();
-                if (value > bestValue) {
-                    bestValue = value;
-                    choice = n;
-                }
-            }
+    /** Return the move from the current position in Main.book(), or -1
+     *  if there is no book or the position is not in it. */
+    private int bookMove() {
+        OpeningBook book = Main.book();
+        int move = book == null ? -1 : book.probe(getBoard());
+        if (move >= 0) {
+            Utils.debug(1, "%s: from book", getBoard().moveString(move));
         }
-        return choice;
+        return move;
     }
 
+    /** Return a move after searching the game tree from the current
+     *  position by iterative deepening until getGame().moveTime()
+     *  milliseconds have elapsed or the outcome is certain.  With
+     *  Main.threads() > 1, helper Searchers run in other threads on
+     *  copies of the position, sharing the game's transposition table.
+     *  Returns the move found by the deepest search completed by any of
+     *  them.  Assumes the game is not over. */
+    private int searchForMove() {
+        Board work = new Board(getBoard());
+        assert getSide() == work.whoseMove();
+        TranspositionTable table = getGame().table();
+        table.newSearch();
+        long start = System.nanoTime();
+        long deadline = start + getGame().moveTime() * 1_000_000L;
+        int numSquares = work.size() * work.size();
+
+        ArrayList<Searcher> helpers = new ArrayList<>();
+        ArrayList<Future<Integer>> results = new ArrayList<>();
+        for (int k = 1; k < Main.threads(); k += 1) {
+            Searcher helper = new Searcher(new Board(work), table,
+                                           _random.nextInt(numSquares));
+            int firstDepth = 1 + k % 2;
+            helpers.add(helper);
+            results.add(helperPool().submit(
+                () -> helper.search(deadline, firstDepth)));
+        }
 
+        Searcher main = new Searcher(work, table, 0);
+        main.search(deadline, 1);
+        for (Searcher helper : helpers) {
+            helper.stop();
+        }
 
-    /** Adds squares to an array list that the AI owns.
-     * @param player = side player is.
-     * @param b = current board.
-     * @param a = current spaces ai has.
-     * */
-    private void aiPiece(Side player, Board b, ArrayList<Integer> a) {
-        int i = 0, n = 0, p = b.numOfSide(player);
-        while (i < b.size() * b.size()) {
-            if (n > p) {
-                break;
-            } else if (b.get(i).getSide() == player && !a.contains(i)) {
-                a.add(i);
-                n++;
-            } else if (a.contains(i) && b.get(i).getSide() != player) {
-                a.remove((Object) i);
+        Searcher best = main;
+        long nodes = main.nodes();
+        for (int k = 0; k < helpers.size(); k += 1) {
+            try {
+                results.get(k).get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new Error("helper search failed", excp);
+            }
+            Searcher helper = helpers.get(k);
+            nodes += helper.nodes();
+            if (helper.depth() > best.depth() && helper.bestMove() >= 0) {
+                best = helper;
             }
-            i++;
         }
+        long nanos = System.nanoTime() - start;
+        long millis = Math.max(1, nanos / 1_000_000);
+        getGame().recordSearch(nodes, nanos);
+        _lastDepth = best.depth();
+        Utils.debug(1, "%s: depth %d, value %d, %d nodes, %d nodes/s",
+                    work.moveString(best.bestMove()), best.depth(),
+                    best.value(), nodes, nodes * 1000 / millis);
+        return best.bestMove();
     }
 
-
-
-    /** Finds an available corner to place a square in.
-     * @param player = side player is.
-     * @param b = current board.
-     * @return integer giving best choice for a move.
-     * */
-    private int availableCorner(Side player, Board b) {
-        int choice;
-        if (b.isLegal(player, b.size(), b.size())) {
-            choice = b.sqNum(b.size(), b.size());
-        } else {
-            choice = b.sqNum(1, 1);
+    /** Return the pool of daemon threads used to run helper searches,
+     *  creating it on first use. */
+    static synchronized ExecutorService helperPool() {
+        if (_helperPool == null) {
+            _helperPool = Executors.newCachedThreadPool((r) -> {
+                Thread thread = new Thread(r, "jump61 search helper");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        return choice;
+        return _helperPool;
     }
 
-
+    /** Threads running helper searches for all automated players. */
+    private static ExecutorService _helperPool;
 
     /** A random-number generator used for move selection. */
     private Random _random;
 
-    /** Used to convey moves discovered by minMax. */
-    private int _foundMove;
-
-    /** Squares the blue AI owns. */
-    private ArrayList<Integer> _aiPiecesBlue = new ArrayList<>();
-
-    /** Squares the red AI owns. */
-    private ArrayList<Integer> _aiPiecesRed = new ArrayList<>();
+    /** The Searchers pondering on my opponent's time (see ponder), and
+     *  their results, in the same order. */
+    private final ArrayList<Searcher> _ponderers = new ArrayList<>();
+    /** See _ponderers. */
+    private final ArrayList<Future<Integer>> _pondering = new ArrayList<>();
+    /** The depth reached by my last search, or 0 if none. */
+    private int _lastDepth;
 }
@@ -2,23 +2,44 @@ package jump61;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.ArrayDeque;
 import java.util.Formatter;
 import java.util.function.Consumer;
 
 import static jump61.Side.RED;
 import static jump61.Side.BLUE;
 import static jump61.Side.WHITE;
-import static jump61.Square.INITIAL;
 import static jump61.Square.square;
 
 /** Represents the state of a Jump61 game.  Squares are indexed either by
  *  row and column (between 1 and size()), or by square number, numbering
  *  squares by rows, with squares in row 1 numbered from 0 to size()-1, in
  *  row 2 numbered from size() to 2*size() - 1, etc. (i.e., row-major order).
+ *  Which squares neighbor which is given by the board's Topology: by
+ *  default, a square grid.
+ *
+ *  Boards of at most BITBOARD_SIZE squares on a side also keep their
+ *  contents as bitboards: 64-bit masks with bit #N standing for square #N,
+ *  one per side giving the squares it occupies, and SPOT_BITS "bitplanes",
+ *  plane #P holding bit P of each square's spot count.  These are kept
+ *  alongside the packed squares (which remain the fastest way to follow
+ *  a cascade one square at a time) and answer whole-board questions---the
+ *  legal moves, the neighbors of a square held by a side, the critical
+ *  squares---with a few word-wide operations.
+ *
+ *  On request (trackFeatures), a Board also keeps up to date a few
+ *  counts that serve as evaluation features for search, such as each
+ *  side's critical squares and squares under threat, so that a
+ *  position can be evaluated in constant time.  Likewise, on request
+ *  (trackCascades), it keeps the connected components of its critical
+ *  squares (see CriticalComponents), from which it bounds the effects
+ *  of a move that starts a cascade without making it.
  *
  *  A Board may be given a notifier---a Consumer<Board> whose
- *  .accept method is called whenever the Board's contents are changed.
+ *  .accept method is called whenever the Board's contents are changed
+ *  by clear or set.  Moves are not announced: the Board has no way to
+ *  batch them, and searches make millions.  Instead, a view can compare
+ *  version() numbers and collect the changed squares with takeChanges
+ *  (see ViewUpdater).
  *
  *  @author Desiree Garcia
  */
@@ -29,20 +50,25 @@ class Board {
         _notifier = NOP;
     }
 
-    /** An N x N board in initial configuration. */
+    /** An N x N square grid in initial configuration. */
     Board(int N) {
+        this(Topology.of(N));
+    }
+
+    /** A board with squares arranged as in TOPOLOGY, in initial
+     *  configuration. */
+    Board(Topology topology) {
         this();
-        _size = N;
-        _numMoves = 0;
-        _board = new Square[size() * size()];
-        _history = new ArrayList<>();
-        Arrays.fill(_board, INITIAL);
+        resize(topology);
+        clearUndo();
+        Arrays.fill(_cells, (byte) EMPTY_CELL);
+        resetCounts();
     }
 
     /** A board whose initial contents are copied from BOARD0, but whose
      *  undo history is clear, and whose notifier does nothing. */
     Board(Board board0) {
-        this(board0.size());
+        this();
         copy(board0);
         _readonlyBoard = new ConstantBoard(this);
     }
@@ -52,39 +78,210 @@ class Board {
         return _readonlyBoard;
     }
 
-    /** (Re)initialize me to a cleared board with N squares on a side. Clears
-     *  the undo history and sets the number of moves to 0. */
+    /** (Re)initialize me to a cleared board with N squares on a side,
+     *  arranged as my squares are now (see Topology.resized). Clears the
+     *  undo history and sets the number of moves to 0. */
     void clear(int N) {
-        Board b = new Board(N);
-        _size = N;
-        _history =  new ArrayList<>();
-        _board = new Square[b._size * b._size];
-        Arrays.fill(_board, INITIAL);
-        _numMoves = 0;
+        clear(_topology == null ? Topology.of(N) : _topology.resized(N));
+    }
+
+    /** (Re)initialize me to a cleared board with squares arranged as in
+     *  TOPOLOGY.  Clears the undo history and sets the number of moves
+     *  to 0. */
+    void clear(Topology topology) {
+        resize(topology);
+        clearUndo();
+        if (_snapshot != null) {
+            releaseSnapshot(false);
+        }
+        Arrays.fill(_cells, (byte) EMPTY_CELL);
+        resetCounts();
+        _allChanged = true;
+        _version += 1;
 
         announce();
     }
 
     /** Copy the contents of BOARD into me. */
     void copy(Board board) {
-        _size = board.size();
-        _board = new Square[size() * size()];
+        resize(board.topology());
         internalCopy(board);
-        _history = new ArrayList<>();
+        clearUndo();
+        _allChanged = true;
+        _version += 1;
+    }
+
+    /** Arrange my squares as in TOPOLOGY, reallocating my squares,
+     *  bitboards, and work queue if my size changes.  The contents of my
+     *  squares are unspecified afterwards. */
+    private void resize(Topology topology) {
+        int N = topology.size();
+        boolean sameSize = _topology != null && N == size();
+        _topology = topology;
+        if (sameSize) {
+            return;
+        }
+        _cells = new byte[N * N];
+        _snapshot = null;
+        if (_changedBits != null) {
+            _changedBits = new long[(N * N + Long.SIZE - 1) / Long.SIZE];
+            _changedList = new int[N * N];
+            _numChanged = 0;
+        }
+        _workQueue = new int[N * N];
+        _spotPlanes = _topology.hasBitboards() ? new long[SPOT_BITS] : null;
+        if (_features != null) {
+            _criticalNeighbors = new byte[2 * N * N];
+        }
     }
 
     /** Copy the contents of BOARD into me, without modifying my undo
-     *  history. Assumes BOARD and I have the same size. */
+     *  history. Assumes BOARD and I have the same topology. */
     private void internalCopy(Board board) {
-        assert size() == board.size();
-        for (int i = 0; i < board.size() * board.size(); i++) {
-            _board[i] = board.get(i);
+        assert topology() == board.topology();
+        if (_snapshot != null) {
+            releaseSnapshot(false);
+        }
+        board = board.backingBoard();
+        System.arraycopy(board._cells, 0, _cells, 0, _cells.length);
+        System.arraycopy(board._sideCounts, 0, _sideCounts, 0,
+                         _sideCounts.length);
+        _numSpots = board._numSpots;
+        _key = board._key;
+        if (_spotPlanes != null) {
+            System.arraycopy(board._sideMasks, 0, _sideMasks, 0,
+                             _sideMasks.length);
+            System.arraycopy(board._spotPlanes, 0, _spotPlanes, 0,
+                             _spotPlanes.length);
+        }
+        if (_features != null) {
+            recomputeFeatures();
+        }
+        if (_components != null) {
+            resetComponents();
+        }
+    }
+
+    /** Returns the Board that holds my contents: myself, unless I am a
+     *  view of another Board. */
+    Board backingBoard() {
+        return this;
+    }
+
+    /** Returns an immutable snapshot of my current contents.  Rather than
+     *  copying my squares, the snapshot shares their storage with me
+     *  until I next change them, when I copy them for myself
+     *  (copy-on-write).  So taking a snapshot costs time independent of
+     *  my size, and taking another before I change returns the same
+     *  one. */
+    Board snapshot() {
+        if (_snapshot == null) {
+            Board frozen = new Board();
+            frozen._topology = _topology;
+            frozen._cells = _cells;
+            System.arraycopy(_sideCounts, 0, frozen._sideCounts, 0,
+                             _sideCounts.length);
+            frozen._numSpots = _numSpots;
+            frozen._key = _key;
+            frozen._version = _version;
+            if (_spotPlanes != null) {
+                System.arraycopy(_sideMasks, 0, frozen._sideMasks, 0,
+                                 _sideMasks.length);
+                frozen._spotPlanes = _spotPlanes.clone();
+            }
+            _snapshot = new ConstantBoard(frozen);
+        }
+        return _snapshot;
+    }
+
+    /** Stop sharing the storage of my squares with my snapshot, giving
+     *  myself new storage that holds a copy of their contents if KEEP,
+     *  and otherwise holds garbage. */
+    private void releaseSnapshot(boolean keep) {
+        _cells = keep ? _cells.clone() : new byte[_cells.length];
+        _snapshot = null;
+    }
+
+    /** Set my spot and side counts to those of a board with all squares
+     *  in their initial state. */
+    private void resetCounts() {
+        Arrays.fill(_sideCounts, 0);
+        _sideCounts[WHITE.ordinal()] = _cells.length;
+        _numSpots = _cells.length;
+        _key = 0;
+        for (int n = 0; n < _cells.length; n += 1) {
+            _key ^= cellKey(n, EMPTY_CELL);
+        }
+        if (_spotPlanes != null) {
+            Arrays.fill(_sideMasks, 0);
+            _sideMasks[WHITE.ordinal()] = _topology.boardMask();
+            Arrays.fill(_spotPlanes, 0);
+            _spotPlanes[0] = _topology.boardMask();
+        }
+        if (_features != null) {
+            recomputeFeatures();
+        }
+        if (_components != null) {
+            resetComponents();
+        }
+    }
+
+    /** Returns a 64-bit Zobrist key for this position: the exclusive or
+     *  of a pseudo-random key for the contents of each square, and of a
+     *  key for the side to move when that is BLUE.  Equal positions have
+     *  equal keys; distinct positions collide with probability about
+     *  2**-64.  Maintained incrementally as squares change, except on
+     *  boards with bitboards, whose keys are instead hashed from the
+     *  bitboards on request, so that cascades need not update a key for
+     *  every square they change. */
+    long positionKey() {
+        long key = _spotPlanes != null ? bitboardKey() : _key;
+        return whoseMove() == BLUE ? key ^ BLUE_TO_MOVE_KEY : key;
+    }
+
+    /** Returns a number that changes whenever my contents do (so that
+     *  equal versions of one Board have equal contents), for telling
+     *  cheaply whether a Board has changed since it was last looked
+     *  at. */
+    long version() {
+        return _version;
+    }
+
+    /** Returns a hash of my bitboards, which determine my contents. */
+    private long bitboardKey() {
+        long key = mix(_sideMasks[RED.ordinal()]);
+        key = mix(key ^ _sideMasks[BLUE.ordinal()]);
+        for (long plane : _spotPlanes) {
+            key = mix(key ^ plane);
         }
+        return key;
+    }
+
+    /** Returns the Zobrist key for square #N having packed contents V.
+     *  Rather than tabulating keys for every square of every board size,
+     *  these are computed by scrambling N and V with the SplitMix64
+     *  finalizer, which is cheap and statistically indistinguishable
+     *  from a table of random numbers. */
+    static long cellKey(int n, int v) {
+        return mix((((long) n << Byte.SIZE) | v) * 0x9E3779B97F4A7C15L);
+    }
+
+    /** Returns Z scrambled by the SplitMix64 finalizer, a bijection on
+     *  longs. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /** Return the number of rows and of columns of THIS. */
     int size() {
-        return _size;
+        return _topology.size();
+    }
+
+    /** Return the Topology of my squares. */
+    Topology topology() {
+        return _topology;
     }
 
     /** Returns the contents of the square at row R, column C
@@ -98,18 +295,44 @@ class Board {
      *  size() - 2*size() - 1, etc. */
     Square get(int n) {
         if (exists(n)) {
-            return _board[n];
+            return square(side(n), spots(n));
         }
         throw new GameException("Square" + n + "does not exist.");
     }
 
+    /** Returns the packed contents of square #N (see pack).  Does not
+     *  check that N exists. */
+    int cell(int n) {
+        return _cells[n] & CELL_MASK;
+    }
+
+    /** Returns the number of spots on square #N without creating a
+     *  Square.  Does not check that N exists. */
+    int spots(int n) {
+        return (_cells[n] & CELL_MASK) >>> SPOT_SHIFT;
+    }
+
+    /** Returns the Side occupying square #N without creating a Square.
+     *  Does not check that N exists. */
+    Side side(int n) {
+        return SIDES[_cells[n] & SIDE_MASK];
+    }
+
+    /** Returns the packed encoding of a square occupied by SIDE with
+     *  SPOTS spots: the spot count in the high six bits and the ordinal
+     *  of SIDE in the low two.  As for Square.square, a square with 0
+     *  spots or controlled by WHITE is encoded as the initial square. */
+    static int pack(Side side, int spots) {
+        if (spots == 0 || side == WHITE) {
+            return EMPTY_CELL;
+        }
+        assert spots <= MAX_SPOTS;
+        return (spots << SPOT_SHIFT) | side.ordinal();
+    }
+
     /** Returns the total number of spots on the board. */
     int numPieces() {
-        int totalSpots = 0;
-        for (Square s : _board) {
-            totalSpots += s.getSpots();
-        }
-        return totalSpots;
+        return _numSpots;
     }
 
     /** Returns the Side of the player who would be next to move.  If the
@@ -164,7 +387,7 @@ class Board {
      *  to square #N. */
     boolean isLegal(Side player, int n) {
         if (exists(n)) {
-            Side playerSide = get(n).getSide();
+            Side playerSide = side(n);
             if (playerSide == WHITE || playerSide == player) {
                 return true;
             }
@@ -172,6 +395,81 @@ class Board {
         return false;
     }
 
+    /** Store the squares on which PLAYER may legally add a spot in
+     *  MOVES[0 .. K-1], in increasing order starting from square #FIRST
+     *  and wrapping around to square #0, and return K.  MOVES must have
+     *  room for every square. */
+    int legalMoves(Side player, int first, int[] moves) {
+        int forbidden = player.opposite().ordinal(), total = _cells.length;
+        int k;
+        k = 0;
+        if (_spotPlanes != null) {
+            long legal = _topology.boardMask() & ~_sideMasks[forbidden],
+                later = legal & (-1L << first);
+            for (long m = later; m != 0; m &= m - 1) {
+                moves[k++] = Long.numberOfTrailingZeros(m);
+            }
+            for (long m = legal & ~later; m != 0; m &= m - 1) {
+                moves[k++] = Long.numberOfTrailingZeros(m);
+            }
+            return k;
+        }
+        for (int n = first; n < total; n += 1) {
+            if ((_cells[n] & SIDE_MASK) != forbidden) {
+                moves[k++] = n;
+            }
+        }
+        for (int n = 0; n < first; n += 1) {
+            if ((_cells[n] & SIDE_MASK) != forbidden) {
+                moves[k++] = n;
+            }
+        }
+        return k;
+    }
+
+    /** Store the squares on which PLAYER may legally add a spot in
+     *  MOVES[0 .. K-1] in increasing order, and return K. */
+    int legalMoves(Side player, int[] moves) {
+        return legalMoves(player, 0, moves);
+    }
+
+    /** Returns true iff adding a spot to square #N would make it jump:
+     *  that is, iff it has as many spots as neighbors. */
+    boolean critical(int n) {
+        return spots(n) == neighbors(n);
+    }
+
+    /** Returns true iff I keep bitboards (see above): that is, iff
+     *  size() <= BITBOARD_SIZE. */
+    boolean hasBitboards() {
+        return _spotPlanes != null;
+    }
+
+    /** Returns the mask of squares occupied by SIDE.  Requires
+     *  hasBitboards(). */
+    long sideMask(Side side) {
+        return _sideMasks[side.ordinal()];
+    }
+
+    /** Returns the mask of critical squares (see critical), comparing
+     *  all squares' spot counts to their numbers of neighbors at once, a
+     *  bitplane at a time.  Requires hasBitboards(). */
+    long criticalMask() {
+        long same = _topology.boardMask();
+        long[] capacityPlanes = _topology.capacityPlanes();
+        for (int p = 0; p < SPOT_BITS; p += 1) {
+            same &= ~(_spotPlanes[p] ^ capacityPlanes[p]);
+        }
+        return same;
+    }
+
+    /** Returns the mask of squares that are neighbors of some square in
+     *  the mask SQUARES (see Topology.neighborMask).  Requires
+     *  hasBitboards(). */
+    long neighborMask(long squares) {
+        return _topology.neighborMask(squares);
+    }
+
     /** Returns true iff PLAYER is allowed to move at this point. */
     boolean isLegal(Side player) {
         return whoseMove().playableSquare(player);
@@ -190,13 +488,29 @@ class Board {
 
     /** Return the number of squares of given SIDE. */
     int numOfSide(Side side) {
-        int numSide = 0;
-        for (Square sq : _board) {
-            if (sq.getSide() == side) {
-                numSide += 1;
+        return _sideCounts[side.ordinal()];
+    }
+
+    /** Return the total number of spots on squares of given SIDE.  With
+     *  bitboards, this takes a population count per bitplane; otherwise,
+     *  it examines every square. */
+    int spotsOfSide(Side side) {
+        int total, ord = side.ordinal();
+        total = 0;
+        if (_spotPlanes != null) {
+            long mask = _sideMasks[ord];
+            for (int p = 0; p < SPOT_BITS; p += 1) {
+                total += Long.bitCount(_spotPlanes[p] & mask) << p;
+            }
+        } else {
+            for (int n = 0; n < _cells.length; n += 1) {
+                int v = _cells[n] & CELL_MASK;
+                if ((v & SIDE_MASK) == ord) {
+                    total += v >>> SPOT_SHIFT;
+                }
             }
         }
-        return numSide;
+        return total;
     }
 
     /** Add a spot from PLAYER at row R, column C.  Assumes
@@ -211,16 +525,18 @@ class Board {
             return;
         }
         markUndo();
-        int oldSpotNumber = get(n).getSpots();
+        int oldSpotNumber = spots(n);
         internalSet(n, oldSpotNumber + 1, player);
         jump(n);
         _numMoves += 1;
+        _version += 1;
     }
 
     /** Set the square at row R, column C to NUM spots (0 <= NUM), and give
      *  it color PLAYER if NUM > 0 (otherwise, white). */
     void set(int r, int c, int num, Side player) {
         internalSet(r, c, num, player);
+        _version += 1;
         announce();
     }
 
@@ -232,107 +548,185 @@ class Board {
     }
 
     /** Set the square #N to NUM spots (1 <= NUM), and give it color PLAYER
-     *  if NUM > 1 (otherwise, white). Does not announce changes. */
+     *  if NUM > 1 (otherwise, white), updating counts of spots and of
+     *  squares of each color. Does not announce changes. */
     private void internalSet(int n, int num, Side player) {
-        _board[n] = square(player, num);
+        int old = _cells[n] & CELL_MASK;
+        if (_undoTop == _undoLog.length) {
+            _undoLog = Arrays.copyOf(_undoLog, 2 * _undoLog.length);
+        }
+        _undoLog[_undoTop] = (n << Byte.SIZE) | old;
+        _undoTop += 1;
+        store(n, pack(player, num));
+    }
+
+    /** Set square #N to the packed value V, updating counts of spots and
+     *  of squares of each color and my position key or bitboards, but not
+     *  the undo log. */
+    private void store(int n, int v) {
+        if (_snapshot != null) {
+            releaseSnapshot(true);
+        }
+        int old = _cells[n] & CELL_MASK;
+        if (_features != null) {
+            removeFeatures(n, old);
+        }
+        _cells[n] = (byte) v;
+        _numSpots += (v >>> SPOT_SHIFT) - (old >>> SPOT_SHIFT);
+        _sideCounts[old & SIDE_MASK] -= 1;
+        _sideCounts[v & SIDE_MASK] += 1;
+        if (_spotPlanes != null) {
+            storeBits(n, old, v);
+        } else {
+            _key ^= cellKey(n, old) ^ cellKey(n, v);
+        }
+        if (_changedBits != null) {
+            noteChange(n);
+        }
+        if (_features != null) {
+            addFeatures(n, v);
+        }
+        if (_components != null
+            && criticalValue(n, old) != criticalValue(n, v)) {
+            if (criticalValue(n, v)) {
+                _components.add(n);
+            } else {
+                _components.markStale();
+            }
+        }
+    }
+
+    /** Change square #N from packed value OLD to V in my bitboards. */
+    private void storeBits(int n, int old, int v) {
+        long bit = 1L << n;
+        _sideMasks[old & SIDE_MASK] ^= bit;
+        _sideMasks[v & SIDE_MASK] ^= bit;
+        for (int diff = (old ^ v) >>> SPOT_SHIFT; diff != 0;
+             diff &= diff - 1) {
+            _spotPlanes[Integer.numberOfTrailingZeros(diff)] ^= bit;
+        }
     }
 
     /** Undo the effects of one move (that is, one addSpot command).  One
      *  can only undo back to the last point at which the undo history
      *  was cleared, or the construction of this Board. */
     void undo() {
+        assert _numMoves > 0;
         _numMoves -= 1;
-        Board b = _history.get(_numMoves);
-        _history.remove(_numMoves);
-        internalCopy(b);
+        _version += 1;
+        int bottom = _moveStarts[_numMoves];
+        CriticalComponents components = _components;
+        _components = null;
+        while (_undoTop > bottom) {
+            _undoTop -= 1;
+            int entry = _undoLog[_undoTop];
+            store(entry >>> Byte.SIZE, entry & CELL_MASK);
+        }
+        if (components != null) {
+            components.rollback(_numMoves);
+            _components = components;
+        }
     }
 
-    /** Record the beginning of a move in the undo history. */
+    /** Record the beginning of a move in the undo history.  Changes
+     *  logged before the first move can never be undone, and are
+     *  discarded. */
     private void markUndo() {
-        Board b = new Board();
-        b.copy(this);
-        _history.add(b);
+        if (_numMoves == 0) {
+            _undoTop = 0;
+        } else if (_numMoves == _moveStarts.length) {
+            _moveStarts = Arrays.copyOf(_moveStarts, 2 * _numMoves);
+        }
+        _moveStarts[_numMoves] = _undoTop;
+        if (_components != null) {
+            _components.mark(_numMoves);
+        }
+    }
+
+    /** Clear the undo history and set the number of moves to 0. */
+    private void clearUndo() {
+        _numMoves = 0;
+        _undoTop = 0;
     }
 
     /** Add DELTASPOTS spots of side PLAYER to row R, column C,
      *  updating counts of numbers of squares of each color. */
     private void simpleAdd(Side player, int r, int c, int deltaSpots) {
-        internalSet(r, c, deltaSpots + get(r, c).getSpots(), player);
+        simpleAdd(player, sqNum(r, c), deltaSpots);
     }
 
     /** Add DELTASPOTS spots of color PLAYER to square #N,
      *  updating counts of numbers of squares of each color. */
     private void simpleAdd(Side player, int n, int deltaSpots) {
-        internalSet(n, deltaSpots + get(n).getSpots(), player);
+        internalSet(n, deltaSpots + spots(n), player);
     }
 
-    /** Used in jump to keep track of squares needing processing.  Allocated
-     *  here to cut down on allocations. */
-    private final ArrayDeque<Integer> _workQueue = new ArrayDeque<>();
-
     /** Do all jumping on this board, assuming that initially, S is the only
-     *  square that might be over-full.
+     *  square that might be over-full.  Over-full squares wait their turn
+     *  in _workQueue, which holds each square at most once (a square is
+     *  queued exactly when it becomes over-full), so it never needs more
+     *  than one slot per square.  Stops as soon as one side owns every
+     *  square.
      *  @param s is the square that begins jump. */
     private void jump(int s) {
-        int numNeighbors = neighbors(s);
-        Side player = get(s).getSide();
-        ArrayList<Integer> indexArray = neighborIndexes(row(s), col(s));
-
-        if (numNeighbors == 4 && get(s).getSpots() == 5) {
-            jumpAdd(s, player, indexArray);
-            for (int i : indexArray) {
-                jump(i);
-            }
-        } else if (numNeighbors == 3 && get(s).getSpots() == 4) {
-            jumpAdd(s, player, indexArray);
-            for (int i : indexArray) {
-                jump(i);
+        Side player = side(s);
+        int[] queue = _workQueue, start = _topology.neighborStart(),
+            list = _topology.neighborList();
+        int total = queue.length, ord = player.ordinal();
+        int head, tail, pending;
+        head = tail = pending = 0;
+        if (spots(s) > start[s + 1] - start[s]) {
+            queue[tail] = s;
+            tail = tail + 1 == total ? 0 : tail + 1;
+            pending += 1;
+        }
+        while (pending > 0 && _sideCounts[ord] < total) {
+            int sq = queue[head];
+            head = head + 1 == total ? 0 : head + 1;
+            pending -= 1;
+            int first = start[sq], last = start[sq + 1];
+            int left = spots(sq) - (last - first);
+            internalSet(sq, left, player);
+            if (left > last - first) {
+                queue[tail] = sq;
+                tail = tail + 1 == total ? 0 : tail + 1;
+                pending += 1;
             }
-        } else if (numNeighbors == 2 && get(s).getSpots() == 3) {
-            jumpAdd(s, player, indexArray);
-            for (int i : indexArray) {
-                jump(i);
+            for (int k = first; k < last; k += 1) {
+                int nb = list[k];
+                int num = spots(nb) + 1;
+                internalSet(nb, num, player);
+                if (num == start[nb + 1] - start[nb] + 1) {
+                    queue[tail] = nb;
+                    tail = tail + 1 == total ? 0 : tail + 1;
+                    pending += 1;
+                }
             }
         }
-
-    }
-
-    /** Recursively calls add spot.
-     * @param s = current spot
-     * @param player = side player is.
-     * @param arr = contains neighbors of s.
-     * */
-    private void jumpAdd(int s, Side player, ArrayList<Integer> arr) {
-        if (getWinner() != null) {
-            return;
-        }
-        _board[s] = square(player, 1);
-        for (int i : arr) {
-            internalSet(i, get(i).getSpots() + 1, player);
-        }
     }
 
     /** Returns my dumped representation. */
     @Override
     public String toString() {
         String breaks = "===";
-        String st = breaks, color;
+        StringBuilder st = new StringBuilder(breaks);
+        char color;
         for (int r = 1; r < size() + 1; r++) {
-            String line = "   ";
+            st.append("\r\n   ");
             for (int c = 1; c < size() + 1; c++) {
-                if (get(r, c).getSide() == RED) {
-                    color = "r";
-                } else if (get(r, c).getSide() == BLUE) {
-                    color = "b";
+                int n = sqNum(r, c);
+                if (side(n) == RED) {
+                    color = 'r';
+                } else if (side(n) == BLUE) {
+                    color = 'b';
                 } else {
-                    color = "-";
+                    color = '-';
                 }
-                line = line + " " + get(r, c).getSpots() + color;
+                st.append(' ').append(spots(n)).append(color);
             }
-            st = st + "\r\n" + line;
         }
-        st = st + "\r\n" + breaks;
-        return st;
+        st.append("\r\n").append(breaks);
+        return st.toString();
     }
 
     /** Returns an external rendition of me, suitable for human-readable
@@ -351,49 +745,353 @@ class Board {
         return out.toString();
     }
 
-    /** Returns the number of neighbors of the square at row R, column C. */
-    int neighbors(int r, int c) {
-        int size = size();
-        int n;
-        n = 0;
-        if (r > 1) {
-            n += 1;
+    /** Start recording which of my squares change (see takeChanges) if
+     *  ON, and otherwise stop.  Starting discards any previous record. */
+    void trackChanges(boolean on) {
+        if (!on) {
+            _changedBits = null;
+            _changedList = null;
+        } else if (_changedBits == null) {
+            _changedBits = new long[(_cells.length + Long.SIZE - 1)
+                                    / Long.SIZE];
+            _changedList = new int[_cells.length];
         }
-        if (c > 1) {
-            n += 1;
+        _numChanged = 0;
+        _allChanged = false;
+    }
+
+    /** Returns the numbers of the squares whose contents may have changed
+     *  since trackChanges(true) or the last call to takeChanges, each
+     *  listed once, and starts a new record.  Moves and undos record the
+     *  squares they actually touch, so this costs time proportional to
+     *  the number of those, not to the size of the board.  Every square
+     *  is listed after a clear or copy, or when changes are not being
+     *  tracked. */
+    int[] takeChanges() {
+        int[] changes;
+        if (_changedBits == null || _allChanged) {
+            changes = new int[size() * size()];
+            for (int n = 0; n < changes.length; n += 1) {
+                changes[n] = n;
+            }
+            if (_changedBits != null) {
+                Arrays.fill(_changedBits, 0);
+            }
+        } else {
+            changes = Arrays.copyOf(_changedList, _numChanged);
+            for (int k = 0; k < _numChanged; k += 1) {
+                _changedBits[_changedList[k] / Long.SIZE] = 0;
+            }
         }
-        if (r < size) {
-            n += 1;
+        _numChanged = 0;
+        _allChanged = false;
+        return changes;
+    }
+
+    /** Start keeping the values of my evaluation features (see feature)
+     *  up to date if ON, and otherwise stop.  While they are kept, each
+     *  change to a square updates them at a cost proportional to the
+     *  number of its neighbors, so that reading them costs constant
+     *  time however large I am. */
+    void trackFeatures(boolean on) {
+        if (!on) {
+            _features = null;
+            _criticalNeighbors = null;
+        } else if (_features == null) {
+            _features = new int[2 * NUM_FEATURES];
+            _criticalNeighbors = new byte[2 * _cells.length];
+            recomputeFeatures();
         }
-        if (c < size) {
-            n += 1;
+    }
+
+    /** Returns the value of evaluation feature F (one of SQUARES,
+     *  SPOTS, ..., CHAINS) for SIDE, which is RED or BLUE.  Requires
+     *  that I am tracking features. */
+    int feature(Side side, int f) {
+        return _features[(side == RED ? 0 : NUM_FEATURES) + f];
+    }
+
+    /** Recompute my features and _criticalNeighbors from scratch. */
+    private void recomputeFeatures() {
+        Arrays.fill(_features, 0);
+        Arrays.fill(_criticalNeighbors, (byte) 0);
+        int[] start = _topology.neighborStart(),
+            list = _topology.neighborList();
+        for (int n = 0; n < _cells.length; n += 1) {
+            int v = _cells[n] & CELL_MASK;
+            if ((v & SIDE_MASK) != WHITE_ORD && criticalValue(n, v)) {
+                int base = (v & SIDE_MASK) == RED_ORD ? 0 : _cells.length;
+                for (int k = start[n]; k < start[n + 1]; k += 1) {
+                    _criticalNeighbors[base + list[k]] += 1;
+                }
+            }
+        }
+        for (int n = 0; n < _cells.length; n += 1) {
+            int v = _cells[n] & CELL_MASK, s = v & SIDE_MASK;
+            if (s == WHITE_ORD) {
+                continue;
+            }
+            int base = s == RED_ORD ? 0 : NUM_FEATURES,
+                mine = s == RED_ORD ? 0 : _cells.length;
+            addOwnFeatures(n, v, base, _cells.length - mine);
+            if (criticalValue(n, v)) {
+                for (int k = start[n]; k < start[n + 1]; k += 1) {
+                    int m = list[k], w = _cells[m] & CELL_MASK;
+                    if ((w & SIDE_MASK) == s && criticalValue(m, w)) {
+                        _features[base + CHAINS] += 1;
+                    }
+                }
+            }
         }
-        return n;
     }
 
-    /** Returns the indexes of neighbors of the square at row R, column C. */
-    public ArrayList<Integer> neighborIndexes(int r, int c) {
-        ArrayList<Integer> indexes = new ArrayList<>();
-        if (exists(r + 1, c)) {
-            indexes.add(sqNum(r + 1, c));
+    /** Add the contributions of square #N, holding packed value V, to my
+     *  features, given that I hold V there and that everything else is
+     *  up to date. */
+    private void addFeatures(int n, int v) {
+        int s = v & SIDE_MASK;
+        if (s == WHITE_ORD) {
+            return;
         }
-        if (exists(r - 1, c)) {
-            indexes.add(sqNum(r - 1, c));
+        int base = s == RED_ORD ? 0 : NUM_FEATURES,
+            otherBase = NUM_FEATURES - base,
+            mine = s == RED_ORD ? 0 : _cells.length,
+            other = _cells.length - mine;
+        addOwnFeatures(n, v, base, other);
+        if (criticalValue(n, v)) {
+            _features[base + CHAINS] += _criticalNeighbors[mine + n];
+            int[] start = _topology.neighborStart(),
+                list = _topology.neighborList();
+            for (int k = start[n]; k < start[n + 1]; k += 1) {
+                int m = list[k], w = _cells[m] & CELL_MASK;
+                if ((w & SIDE_MASK) == s) {
+                    if (criticalValue(m, w)) {
+                        _features[base + CHAINS] += 1;
+                    }
+                } else if ((w & SIDE_MASK) != WHITE_ORD
+                           && _criticalNeighbors[mine + m] == 0) {
+                    _features[otherBase + THREATENED] += 1;
+                }
+                _criticalNeighbors[mine + m] += 1;
+            }
         }
-        if (exists(r, c + 1)) {
-            indexes.add(sqNum(r, c + 1));
+    }
+
+    /** Remove the contributions of square #N, holding packed value V, to
+     *  my features, given that they are up to date. */
+    private void removeFeatures(int n, int v) {
+        int s = v & SIDE_MASK;
+        if (s == WHITE_ORD) {
+            return;
         }
-        if (exists(r, c - 1)) {
-            indexes.add(sqNum(r, c - 1));
+        int base = s == RED_ORD ? 0 : NUM_FEATURES,
+            otherBase = NUM_FEATURES - base,
+            mine = s == RED_ORD ? 0 : _cells.length,
+            other = _cells.length - mine;
+        int spots = v >>> SPOT_SHIFT, capacity = _topology.capacity(n);
+        _features[base + SQUARES] -= 1;
+        _features[base + SPOTS] -= spots;
+        _features[base + CORNERS] -= capacity <= 2 ? 1 : 0;
+        _features[base + EDGES] -= capacity == 3 ? 1 : 0;
+        _features[base + THREATENED] -= _criticalNeighbors[other + n] > 0
+            ? 1 : 0;
+        if (criticalValue(n, v)) {
+            _features[base + CRITICAL] -= 1;
+            _features[base + CHAINS] -= _criticalNeighbors[mine + n];
+            int[] start = _topology.neighborStart(),
+                list = _topology.neighborList();
+            for (int k = start[n]; k < start[n + 1]; k += 1) {
+                int m = list[k], w = _cells[m] & CELL_MASK;
+                _criticalNeighbors[mine + m] -= 1;
+                if ((w & SIDE_MASK) == s) {
+                    if (criticalValue(m, w)) {
+                        _features[base + CHAINS] -= 1;
+                    }
+                } else if ((w & SIDE_MASK) != WHITE_ORD
+                           && _criticalNeighbors[mine + m] == 0) {
+                    _features[otherBase + THREATENED] -= 1;
+                }
+            }
         }
+    }
 
-        return indexes;
+    /** Add the contributions of square #N, holding packed value V, to the
+     *  features of its side that depend only on it, those features
+     *  starting at _features[BASE], and the counts of critical opposing
+     *  neighbors starting at _criticalNeighbors[OTHER]. */
+    private void addOwnFeatures(int n, int v, int base, int other) {
+        int spots = v >>> SPOT_SHIFT, capacity = _topology.capacity(n);
+        _features[base + SQUARES] += 1;
+        _features[base + SPOTS] += spots;
+        _features[base + CORNERS] += capacity <= 2 ? 1 : 0;
+        _features[base + EDGES] += capacity == 3 ? 1 : 0;
+        _features[base + THREATENED] += _criticalNeighbors[other + n] > 0
+            ? 1 : 0;
+        if (criticalValue(n, v)) {
+            _features[base + CRITICAL] += 1;
+        }
+    }
+
+    /** Start keeping the connected components of my critical squares up
+     *  to date if ON, and otherwise stop.  While they are kept, a square
+     *  that becomes critical costs time proportional to its number of
+     *  neighbors, and undo restores the components in time proportional
+     *  to the changes it undoes; other changes leave the components to be
+     *  rebuilt, in time proportional to my size, when next needed. */
+    void trackCascades(boolean on) {
+        if (!on) {
+            _components = null;
+        } else if (_components == null) {
+            resetComponents();
+        }
+    }
+
+    /** Returns the number of squares that a spot added to square #N would
+     *  certainly make jump: the number in its component of critical
+     *  squares, or 0 if it is not critical.  Requires that I am tracking
+     *  cascades. */
+    int cascadeReach(int n) {
+        return components().size(n);
+    }
+
+    /** Returns a lower bound on the number of squares not held by PLAYER
+     *  that PLAYER would capture by adding a spot to square #N: those in
+     *  or neighboring N's component of critical squares (or N alone, if
+     *  it is not critical), each of which either jumps or receives a spot
+     *  from a square that does.  The bound is exact unless the cascade
+     *  fills other squares past capacity, or wins.  Requires that I am
+     *  tracking cascades. */
+    int cascadeCaptures(Side player, int n) {
+        CriticalComponents components = components();
+        int ord = player.ordinal();
+        if (!components.contains(n)) {
+            return (_cells[n] & SIDE_MASK) == ord ? 0 : 1;
+        }
+        int root = components.find(n);
+        long key = (_version << 2) | ord;
+        int captures = components.recall(root, key);
+        if (captures >= 0) {
+            return captures;
+        }
+        long stamp = components.newStamp();
+        long[] seen = components.stamps();
+        int[] start = _topology.neighborStart(),
+            list = _topology.neighborList();
+        captures = 0;
+        int m = root;
+        do {
+            if (seen[m] != stamp) {
+                seen[m] = stamp;
+                captures += (_cells[m] & SIDE_MASK) == ord ? 0 : 1;
+            }
+            for (int k = start[m]; k < start[m + 1]; k += 1) {
+                int nb = list[k];
+                if (seen[nb] != stamp) {
+                    seen[nb] = stamp;
+                    captures += (_cells[nb] & SIDE_MASK) == ord ? 0 : 1;
+                }
+            }
+            m = components.next(m);
+        } while (m != root);
+        components.remember(root, key, captures);
+        return captures;
+    }
+
+    /** Returns true iff adding a spot to square #N would certainly win
+     *  the game for PLAYER, according to cascadeCaptures.  That is
+     *  computed only for components large enough to win, so this is
+     *  usually cheaper.  Requires that I am tracking cascades. */
+    boolean cascadeWins(Side player, int n) {
+        CriticalComponents components = components();
+        int needed = _cells.length - _sideCounts[player.ordinal()];
+        int bound = components.contains(n) ? components.span(n) : 1;
+        return bound >= needed && cascadeCaptures(player, n) == needed;
+    }
+
+    /** Returns my critical components, rebuilding them first if they are
+     *  stale. */
+    private CriticalComponents components() {
+        if (_components.stale()) {
+            int count;
+            count = 0;
+            for (int n = 0; n < _cells.length; n += 1) {
+                if (criticalValue(n, _cells[n] & CELL_MASK)) {
+                    _workQueue[count] = n;
+                    count += 1;
+                }
+            }
+            _components.rebuild(_workQueue, count);
+        }
+        return _components;
+    }
+
+    /** Make my critical components stale, replacing them if my topology
+     *  has changed. */
+    private void resetComponents() {
+        if (_components == null || _components.topology() != _topology) {
+            _components = new CriticalComponents(_topology);
+        } else {
+            _components.markStale();
+        }
     }
 
+    /** Returns true iff square #N would be full (or overfull) holding
+     *  packed value V. */
+    private boolean criticalValue(int n, int v) {
+        return (v >>> SPOT_SHIFT) >= _topology.capacity(n);
+    }
+
+    /** Record that square #N has changed, if I am tracking changes. */
+    private void noteChange(int n) {
+        long bit = 1L << n;
+        int w = n / Long.SIZE;
+        if ((_changedBits[w] & bit) == 0) {
+            _changedBits[w] |= bit;
+            _changedList[_numChanged] = n;
+            _numChanged += 1;
+        }
+    }
+
+    /** Returns the number of neighbors of the square at row R, column C. */
+    int neighbors(int r, int c) {
+        return neighbors(sqNum(r, c));
+    }
+
+    /** Returns the indexes of neighbors of the square at row R, column C.
+     *  This allocates a new list; code that must not should iterate over
+     *  topology().neighborList() instead. */
+    public ArrayList<Integer> neighborIndexes(int r, int c) {
+        ArrayList<Integer> indexes = new ArrayList<>();
+        int n = sqNum(r, c);
+        int[] start = topology().neighborStart(),
+            list = topology().neighborList();
+        for (int k = start[n]; k < start[n + 1]; k += 1) {
+            indexes.add(list[k]);
+        }
+        return indexes;
+    }
 
     /** Returns the number of neighbors of square #N. */
     int neighbors(int n) {
-        return neighbors(row(n), col(n));
+        return _topology.capacity(n);
+    }
+
+    /** Returns the number of neighbors of square #N occupied by SIDE. */
+    int neighborsOfSide(int n, Side side) {
+        if (_spotPlanes != null) {
+            return Long.bitCount(_topology.neighborMask(n)
+                                 & _sideMasks[side.ordinal()]);
+        }
+        int count, ord = side.ordinal();
+        int[] start = _topology.neighborStart(),
+            list = _topology.neighborList();
+        count = 0;
+        for (int k = start[n]; k < start[n + 1]; k += 1) {
+            if ((_cells[list[k]] & SIDE_MASK) == ord) {
+                count += 1;
+            }
+        }
+        return count;
     }
 
     @Override
@@ -402,13 +1100,11 @@ class Board {
             return false;
         } else {
             Board B = (Board) obj;
-            if (B.size() != this.size()) {
+            if (B.topology() != this.topology()) {
                 return false;
             }
             for (int i = 0; i < B.size() * B.size(); i++) {
-                if (get(i).getSide() != B.get(i).getSide()) {
-                    return false;
-                } else if (get(i).getSpots() != B.get(i).getSpots()) {
+                if (cell(i) != B.cell(i)) {
                     return false;
                 }
             }
@@ -420,7 +1116,7 @@ class Board {
 
     @Override
     public int hashCode() {
-        return numPieces();
+        return Long.hashCode(positionKey());
     }
 
     /** Set my notifier to NOTIFY. */
@@ -440,19 +1136,130 @@ class Board {
     /** A read-only version of this Board. */
     private ConstantBoard _readonlyBoard;
 
+    /** The snapshot returned by snapshot() that shares _cells with me, or
+     *  null if there is none. */
+    private Board _snapshot;
+
     /** Use _notifier.accept(B) to announce changes to this board. */
     private Consumer<Board> _notifier;
 
-    /** The length of the current board. */
-    private int _size;
+    /** The arrangement of my squares, shared with all boards of my
+     *  size. */
+    private Topology _topology;
 
     /** The length of the current board. */
     private int _numMoves;
 
-    /** The board of squares. */
-    private Square[] _board;
+    /** Shift of the spot count within a packed square. */
+    static final int SPOT_SHIFT = 2;
+    /** Mask selecting the side ordinal of a packed square. */
+    static final int SIDE_MASK = (1 << SPOT_SHIFT) - 1;
+    /** Mask selecting the (unsigned) bits of a packed square. */
+    static final int CELL_MASK = 0xFF;
+    /** Largest spot count that fits in a packed square. */
+    static final int MAX_SPOTS = CELL_MASK >>> SPOT_SHIFT;
+    /** The packed encoding of INITIAL. */
+    static final int EMPTY_CELL = 1 << SPOT_SHIFT;
+    /** The Sides, indexed by ordinal. */
+    private static final Side[] SIDES = Side.values();
+    /** Ordinals of WHITE and RED. */
+    private static final int
+        WHITE_ORD = WHITE.ordinal(), RED_ORD = RED.ordinal();
+
+    /** Evaluation features of a side (see feature): the numbers of its
+     *  squares; of its spots; of its critical (full) squares; of its
+     *  squares that neighbor a critical opposing square, and so would be
+     *  captured by a move there; of its corner squares (with two
+     *  neighbors) and edge squares (with three); and of the pairs of
+     *  its critical squares of which one neighbors the other, which
+     *  carry a cascade onward. */
+    static final int
+        SQUARES = 0, SPOTS = 1, CRITICAL = 2, THREATENED = 3, CORNERS = 4,
+        EDGES = 5, CHAINS = 6;
+    /** Number of evaluation features. */
+    static final int NUM_FEATURES = 7;
+
+    /** The contents of my squares, in row-major order, each packed as
+     *  described in pack.  A Square is created only on request (get). */
+    private byte[] _cells;
+
+    /** Largest size of board that keeps bitboards. */
+    static final int BITBOARD_SIZE = 8;
+    /** Number of bitplanes needed to hold any spot count. */
+    static final int SPOT_BITS =
+        Integer.SIZE - Integer.numberOfLeadingZeros(MAX_SPOTS);
+
+    /** When size() <= BITBOARD_SIZE, the mask of squares occupied by each
+     *  Side, indexed by ordinal. */
+    private final long[] _sideMasks = new long[SIDES.length];
+
+    /** When size() <= BITBOARD_SIZE, bitplanes of my squares' spot
+     *  counts: bit N of _spotPlanes[P] is bit P of spots(N).  Otherwise
+     *  null. */
+    private long[] _spotPlanes;
+
+    /** Total number of spots in _cells. */
+    private int _numSpots;
+
+    /** Exclusive or of cellKey(N, V) over all squares #N with packed
+     *  contents V.  Not maintained on boards with bitboards. */
+    private long _key;
+
+    /** See version(). */
+    private long _version;
+
+    /** Key included in positionKey when BLUE is to move. */
+    private static final long BLUE_TO_MOVE_KEY = cellKey(-1, 0);
+
+    /** Number of squares in _cells of each Side, indexed by ordinal. */
+    private final int[] _sideCounts = new int[SIDES.length];
+
+    /** Used in jump as a ring buffer of squares needing processing.
+     *  Allocated here to cut down on allocations. */
+    private int[] _workQueue;
+
+    /** The undo log: for each square change since the start of the first
+     *  undoable move, the square number shifted left by Byte.SIZE, or'ed
+     *  with the square's previous packed value (which leaves room for
+     *  square numbers below 2**24).  Reused across moves. */
+    private int[] _undoLog = new int[INITIAL_LOG_SIZE];
+
+    /** Number of entries in use in _undoLog. */
+    private int _undoTop;
+
+    /** _moveStarts[K] is the value of _undoTop before move #K. */
+    private int[] _moveStarts = new int[INITIAL_LOG_SIZE];
+
+    /** When tracking changes, a bit set of the squares changed since the
+     *  last takeChanges; otherwise null. */
+    private long[] _changedBits;
+
+    /** When tracking changes, the squares in _changedBits, in the order
+     *  first changed, in _changedList[0 .. _numChanged-1]. */
+    private int[] _changedList;
+
+    /** Number of squares in _changedList. */
+    private int _numChanged;
+
+    /** True iff every square should be taken to have changed since the
+     *  last takeChanges. */
+    private boolean _allChanged;
+
+    /** When tracking features, their values for RED, followed by their
+     *  values for BLUE; otherwise null. */
+    private int[] _features;
+
+    /** When tracking features, the number of critical red neighbors of
+     *  each square (that is, of critical red squares of which it is a
+     *  neighbor), followed by the number of critical blue ones;
+     *  otherwise null. */
+    private byte[] _criticalNeighbors;
+
+    /** When tracking cascades, the components of my critical squares;
+     *  otherwise null. */
+    private CriticalComponents _components;
 
-    /** The history of the board. */
-    private ArrayList<Board> _history;
+    /** Initial capacity of _undoLog and _moveStarts. */
+    private static final int INITIAL_LOG_SIZE = 64;
 
 }
@@ -1,5 +1,8 @@
 package jump61;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import static jump61.Side.*;
 
 import org.junit.Test;
@@ -245,6 +248,526 @@ public class BoardTest {
 
 
 
+    @Test
+    public void testPackedView() {
+        Board B = new Board(4);
+        B.set(2, 3, 3, BLUE);
+        int n = B.sqNum(2, 3);
+        assertEquals("wrong spots", 3, B.spots(n));
+        assertEquals("wrong side", BLUE, B.side(n));
+        assertEquals("wrong packing", Board.pack(BLUE, 3), B.cell(n));
+        assertSame("view should be memoized", Square.square(BLUE, 3),
+                   B.get(2, 3));
+        B.set(2, 3, 0, BLUE);
+        assertEquals("cleared square", Board.EMPTY_CELL, B.cell(n));
+        assertSame("cleared square", Square.INITIAL, B.get(n));
+        ConstantBoard C = new ConstantBoard(B);
+        assertEquals("view spots", B.spots(0), C.spots(0));
+        assertEquals("copy", B, new Board(C));
+    }
+
+    @Test
+    public void testLongCascade() {
+        Board B = new Board(10);
+        for (int r = 1; r <= B.size(); r += 1) {
+            for (int c = 1; c <= B.size(); c += 1) {
+                B.set(r, c, B.neighbors(r, c), (r + c) % 2 == 0 ? RED : BLUE);
+            }
+        }
+        B.set(10, 10, 1, RED);
+        Board before = new Board(B);
+        B.addSpot(RED, 1, 1);
+        assertEquals("cascade should capture board", RED, B.getWinner());
+        assertEquals("wrong red count", 100, B.numOfSide(RED));
+        assertCounts(B);
+        B.undo();
+        assertEquals("undo should restore cascade", before, B);
+        assertCounts(B);
+    }
+
+    @Test
+    public void testPositionKey() {
+        Board B = new Board(4), B2 = new Board(4);
+        long initial = B.positionKey();
+        assertNotEquals("sizes should differ", initial,
+                        new Board(5).positionKey());
+        B.addSpot(RED, 1, 1);
+        B.addSpot(BLUE, 4, 4);
+        B.addSpot(RED, 2, 2);
+        B2.addSpot(RED, 2, 2);
+        B2.addSpot(BLUE, 4, 4);
+        B2.addSpot(RED, 1, 1);
+        assertEquals("transposed positions", B, B2);
+        assertEquals("transposed keys", B.positionKey(), B2.positionKey());
+        assertEquals("hash codes", B.hashCode(), B2.hashCode());
+        assertEquals("recomputed key", B.positionKey(),
+                     new Board(new ConstantBoard(B)).positionKey());
+        B.undo();
+        assertNotEquals("keys should differ", B.positionKey(),
+                        B2.positionKey());
+        B.undo();
+        B.undo();
+        assertEquals("undo should restore key", initial, B.positionKey());
+    }
+
+    @Test
+    public void testLegalMoves() {
+        Board B = new Board(2);
+        B.addSpot(RED, 1, 1);
+        B.addSpot(BLUE, 2, 2);
+        int[] moves = new int[4];
+        assertEquals("wrong number of moves", 3, B.legalMoves(RED, moves));
+        assertArrayEquals("wrong moves", new int[] {0, 1, 2},
+                          Arrays.copyOf(moves, 3));
+        assertEquals("wrong number of moves", 3,
+                     B.legalMoves(BLUE, 2, moves));
+        assertArrayEquals("wrong rotated moves", new int[] {2, 3, 1},
+                          Arrays.copyOf(moves, 3));
+        assertTrue("corner with 2 spots is critical", B.critical(0));
+        assertFalse("white square is not critical", B.critical(1));
+        assertEquals("wrong neighbor count", 0, B.neighborsOfSide(0, BLUE));
+        assertEquals("wrong neighbor count", 1, B.neighborsOfSide(1, RED));
+    }
+
+    @Test
+    public void testCounts() {
+        Board B = new Board(3);
+        B.addSpot(RED, 1, 1);
+        B.addSpot(BLUE, 2, 2);
+        B.addSpot(RED, 1, 1);
+        assertCounts(B);
+        B.undo();
+        assertCounts(B);
+        B.set(3, 3, 2, BLUE);
+        assertCounts(B);
+        assertCounts(new Board(new ConstantBoard(B)));
+    }
+
+    @Test
+    public void testBitboards() {
+        assertFalse("10x10 bitboards", new Board(10).hasBitboards());
+        for (int N = 2; N <= Board.BITBOARD_SIZE; N += 1) {
+            Board B = new Board(N);
+            assertTrue("no bitboards", B.hasBitboards());
+            assertBitboards(B);
+            Random random = new Random(N);
+            int[] moves = new int[N * N];
+            for (int k = 0; k < 3 * N * N && B.getWinner() == null; k += 1) {
+                int count = B.legalMoves(B.whoseMove(), moves);
+                B.addSpot(B.whoseMove(), moves[random.nextInt(count)]);
+                assertBitboards(B);
+                if (k % 5 == 4) {
+                    B.undo();
+                    assertBitboards(B);
+                }
+            }
+            assertBitboards(new Board(B));
+            B.set(1, 1, 2, BLUE);
+            assertBitboards(B);
+            B.clear(N);
+            assertBitboards(B);
+        }
+    }
+
+    @Test
+    public void testTopology() {
+        Board B = new Board(5);
+        assertSame("topology not shared", B.topology(),
+                   new Board(new ConstantBoard(B)).topology());
+        assertSame("topology not cached", Topology.of(7), Topology.of(7));
+        Topology t = B.topology();
+        int[] start = t.neighborStart(), list = t.neighborList();
+        assertEquals("list length", 4 * 5 * 4, start[t.numSquares()]);
+        for (int n = 0; n < t.numSquares(); n += 1) {
+            int r = B.row(n), c = B.col(n);
+            int expected = (r > 1 ? 1 : 0) + (r < 5 ? 1 : 0)
+                + (c > 1 ? 1 : 0) + (c < 5 ? 1 : 0);
+            assertEquals("capacity", expected, t.capacity(n));
+            assertEquals("neighbor count", expected, start[n + 1] - start[n]);
+            for (int k = start[n]; k < start[n + 1]; k += 1) {
+                int nb = list[k];
+                int distance = Math.abs(B.row(nb) - r)
+                    + Math.abs(B.col(nb) - c);
+                assertEquals("not adjacent", 1, distance);
+            }
+        }
+    }
+
+    @Test
+    public void testTopologyKinds() {
+        Topology torus = Topology.of(Topology.Kind.TORUS, 4),
+            hex = Topology.of(Topology.Kind.HEX, 4);
+        for (int n = 0; n < 16; n += 1) {
+            assertEquals("torus capacity", 4, torus.capacity(n));
+        }
+        assertEquals("hex corner", 2, hex.capacity(0));
+        assertEquals("hex corner", 3, hex.capacity(3));
+        assertEquals("hex edge", 4, hex.capacity(1));
+        assertEquals("hex interior", 6, hex.capacity(5));
+
+        Board B = new Board(torus);
+        B.set(1, 1, 4, RED);
+        B.addSpot(RED, 1, 1);
+        checkBoard("#torus", B, 1, 1, 1, RED, 1, 2, 2, RED, 2, 1, 2, RED,
+                   1, 4, 2, RED, 4, 1, 2, RED);
+        B.clear(5);
+        assertSame("size change keeps kind",
+                   Topology.of(Topology.Kind.TORUS, 5), B.topology());
+        assertNotEquals("topology ignored", new Board(5), B);
+        assertSame("copy keeps topology", B.topology(),
+                   new Board(B).topology());
+    }
+
+    @Test
+    public void testGraphTopology() {
+        Topology torus = Topology.of(Topology.Kind.TORUS, 3);
+        int[][] neighbors = new int[9][];
+        for (int n = 0; n < 9; n += 1) {
+            neighbors[n] = new int[torus.capacity(n)];
+            for (int k = 0; k < neighbors[n].length; k += 1) {
+                neighbors[n][k] = torus.neighborList()[
+                    torus.neighborStart()[n] + k];
+            }
+        }
+        Topology graph = Topology.graph(3, neighbors);
+        assertEquals("graph kind", Topology.Kind.GRAPH, graph.kind());
+        for (int depth = 1; depth <= 4; depth += 1) {
+            Perft.Counts a = Perft.count(new Board(torus), depth),
+                b = Perft.count(new Board(graph), depth);
+            assertEquals("leaves", a.leaves, b.leaves);
+            assertEquals("cascades", a.cascades, b.cascades);
+            assertEquals("wins", a.wins, b.wins);
+        }
+        neighbors[4] = new int[] { 4 };
+        try {
+            Topology.graph(3, neighbors);
+            fail("self-neighbor accepted");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testGraphSpotBound() {
+        int[][] fan = new int[36][];
+        for (int n = 0; n < 36; n += 1) {
+            fan[n] = new int[] { 35 };
+        }
+        fan[35] = new int[] { 0 };
+        try {
+            Topology.graph(6, fan);
+            fail("one-way neighbors accepted");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+
+        int[][] pairs = new int[36][];
+        for (int n = 0; n < 36; n += 1) {
+            pairs[n] = new int[] { n ^ 1 };
+        }
+        try {
+            Topology.graph(6, pairs);
+            fail("disconnected graph accepted");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+
+        int[][] star = new int[36][];
+        star[0] = new int[Topology.MAX_DEGREE];
+        for (int k = 1; k <= Topology.MAX_DEGREE; k += 1) {
+            star[0][k - 1] = k;
+            star[k] = new int[] { 0 };
+        }
+        int tail = Topology.MAX_DEGREE + 1;
+        star[1] = new int[] { 0, tail };
+        for (int n = tail; n < 36; n += 1) {
+            star[n] = n + 1 < 36 ? new int[] { n - 1, n + 1 }
+                : new int[] { n - 1 };
+        }
+        star[tail][0] = 1;
+        Board B = new Board(Topology.graph(6, star));
+        Random random = new Random(17);
+        int[] moves = new int[36];
+        for (int k = 0; k < 500 && B.getWinner() == null; k += 1) {
+            int count = B.legalMoves(B.whoseMove(), moves);
+            B.addSpot(B.whoseMove(), moves[random.nextInt(count)]);
+            int total;
+            total = 0;
+            for (int n = 0; n < 36; n += 1) {
+                total += B.spots(n);
+            }
+            assertEquals("spots lost", total, B.numPieces());
+        }
+    }
+
+    @Test
+    public void testSnapshot() {
+        Board B = new Board(4);
+        B.addSpot(RED, 1, 1);
+        Board snap = B.snapshot();
+        assertSame("unchanged board, new snapshot", snap, B.snapshot());
+        assertSame("view's snapshot", snap,
+                   new ConstantBoard(B).snapshot());
+        assertEquals("snapshot differs", B, snap);
+        B.addSpot(BLUE, 2, 2);
+        assertNotEquals("snapshot followed change", B, snap);
+        checkBoard("#snap1", snap, 1, 1, 2, RED);
+        assertEquals("snapshot key", new Board(snap).positionKey(),
+                     snap.positionKey());
+        Board snap2 = B.snapshot();
+        assertNotSame("stale snapshot", snap, snap2);
+        B.undo();
+        checkBoard("#snap2", snap2, 1, 1, 2, RED, 2, 2, 2, BLUE);
+        assertEquals("undo", snap, B);
+        snap2.addSpot(RED, 3, 3);
+        checkBoard("#snap3", snap2, 1, 1, 2, RED, 2, 2, 2, BLUE);
+        Board snap3 = B.snapshot();
+        B.clear(4);
+        checkBoard("#snap4", snap3, 1, 1, 2, RED);
+        B.copy(snap2);
+        checkBoard("#snap5", snap3, 1, 1, 2, RED);
+        assertEquals("copy of snapshot", snap2, B);
+    }
+
+    @Test
+    public void testFeatures() {
+        Board B = new Board(3);
+        B.trackFeatures(true);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 3, RED);
+        B.set(2, 1, 1, BLUE);
+        B.set(2, 2, 1, BLUE);
+        assertEquals("squares", 2, B.feature(RED, Board.SQUARES));
+        assertEquals("spots", 5, B.feature(RED, Board.SPOTS));
+        assertEquals("critical", 2, B.feature(RED, Board.CRITICAL));
+        assertEquals("threatened", 2, B.feature(BLUE, Board.THREATENED));
+        assertEquals("not threatened", 0, B.feature(RED, Board.THREATENED));
+        assertEquals("corners", 1, B.feature(RED, Board.CORNERS));
+        assertEquals("edges", 1, B.feature(BLUE, Board.EDGES));
+        assertEquals("chains", 2, B.feature(RED, Board.CHAINS));
+
+        Topology[] topologies = {
+            Topology.of(5), Topology.of(9),
+            Topology.of(Topology.Kind.TORUS, 5),
+            Topology.of(Topology.Kind.HEX, 5),
+        };
+        Random random = new Random(23);
+        int[] moves = new int[81];
+        for (Topology topology : topologies) {
+            Board C = new Board(topology);
+            C.trackFeatures(true);
+            int made;
+            made = 0;
+            for (int k = 0; k < 200 && C.getWinner() == null; k += 1) {
+                int count = C.legalMoves(C.whoseMove(), moves);
+                C.addSpot(C.whoseMove(), moves[random.nextInt(count)]);
+                made += 1;
+                if (k % 5 == 4) {
+                    C.undo();
+                    made -= 1;
+                }
+                assertFeatures("move " + k, C);
+            }
+            for (; made > 0; made -= 1) {
+                C.undo();
+                assertFeatures("undo", C);
+            }
+            assertEquals("no squares", 0, C.feature(RED, Board.SQUARES));
+        }
+    }
+
+    /** Check that the features B keeps match those computed afresh. */
+    private static void assertFeatures(String msg, Board B) {
+        Board fresh = new Board(B);
+        fresh.trackFeatures(true);
+        for (Side side : new Side[] { RED, BLUE }) {
+            for (int f = 0; f < Board.NUM_FEATURES; f += 1) {
+                assertEquals(msg + ": feature " + f + " of " + side,
+                             fresh.feature(side, f), B.feature(side, f));
+            }
+        }
+    }
+
+    @Test
+    public void testCascades() {
+        Board B = new Board(3);
+        B.trackCascades(true);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 3, RED);
+        B.set(2, 1, 1, BLUE);
+        B.set(2, 2, 1, BLUE);
+        assertEquals("reach", 2, B.cascadeReach(B.sqNum(1, 1)));
+        assertEquals("captures", 3, B.cascadeCaptures(RED, B.sqNum(1, 1)));
+        assertEquals("quiet reach", 0, B.cascadeReach(B.sqNum(3, 3)));
+        assertEquals("quiet capture", 1,
+                     B.cascadeCaptures(RED, B.sqNum(3, 3)));
+        assertFalse("not a win", B.cascadeWins(RED, B.sqNum(1, 1)));
+        Board D = new Board(2);
+        D.trackCascades(true);
+        D.set(1, 1, 2, RED);
+        D.set(1, 2, 1, RED);
+        D.set(2, 1, 1, BLUE);
+        assertFalse("white left", D.cascadeWins(RED, D.sqNum(1, 1)));
+        D.set(2, 2, 1, RED);
+        assertTrue("win", D.cascadeWins(RED, D.sqNum(1, 1)));
+
+        Topology[] topologies = {
+            Topology.of(4), Topology.of(9),
+            Topology.of(Topology.Kind.TORUS, 5),
+            Topology.of(Topology.Kind.HEX, 5),
+        };
+        Random random = new Random(24);
+        int[] moves = new int[81];
+        for (Topology topology : topologies) {
+            Board C = new Board(topology);
+            C.trackCascades(true);
+            int made;
+            made = 0;
+            for (int k = 0; k < 200 && C.getWinner() == null; k += 1) {
+                assertCascades("move " + k, C);
+                int count = C.legalMoves(C.whoseMove(), moves);
+                C.addSpot(C.whoseMove(), moves[random.nextInt(count)]);
+                made += 1;
+                if (k % 3 == 2) {
+                    C.undo();
+                    made -= 1;
+                }
+            }
+            for (; made > 0; made -= 1) {
+                C.undo();
+                assertCascades("undo", C);
+            }
+        }
+    }
+
+    /** Check that the cascades that B predicts for each legal move agree
+     *  with predictions made afresh, and with the effects of the
+     *  moves. */
+    private static void assertCascades(String msg, Board B) {
+        Side player = B.whoseMove();
+        Board fresh = new Board(B);
+        fresh.trackCascades(true);
+        int[] moves = new int[B.size() * B.size()];
+        int count = B.legalMoves(player, moves);
+        for (int k = 0; k < count; k += 1) {
+            int n = moves[k];
+            assertEquals(msg + ": reach of " + n,
+                         fresh.cascadeReach(n), B.cascadeReach(n));
+            int captures = B.cascadeCaptures(player, n);
+            assertEquals(msg + ": captures of " + n,
+                         fresh.cascadeCaptures(player, n), captures);
+            Board after = new Board(B);
+            after.addSpot(player, n);
+            assertTrue(msg + ": too many captures by " + n,
+                       after.numOfSide(player) - B.numOfSide(player)
+                       >= captures);
+            if (B.cascadeWins(player, n)) {
+                assertEquals(msg + ": no win by " + n,
+                             player, after.getWinner());
+            }
+        }
+    }
+
+    @Test
+    public void testVersion() {
+        Board B = new Board(3);
+        long v0 = B.version();
+        B.addSpot(RED, 1, 1);
+        long v1 = B.version();
+        assertNotEquals("move", v0, v1);
+        B.isLegal(BLUE, 3, 3);
+        B.snapshot();
+        assertEquals("no change", v1, B.version());
+        assertEquals("snapshot version", v1, B.snapshot().version());
+        assertEquals("view version", v1, new ConstantBoard(B).version());
+        B.undo();
+        assertNotEquals("undo", v1, B.version());
+        long v2 = B.version();
+        B.set(3, 3, 2, BLUE);
+        assertNotEquals("set", v2, B.version());
+        long v3 = B.version();
+        B.clear(3);
+        assertNotEquals("clear", v3, B.version());
+    }
+
+    @Test
+    public void testLargeBoard() {
+        int N = 50;
+        Board B = new Board(N);
+        Board before = new Board(N);
+        B.trackChanges(true);
+        assertEquals("no changes yet", 0, B.takeChanges().length);
+        Random random = new Random(N);
+        int[] moves = new int[N * N];
+        for (int k = 0; k < 10 * N * N && B.getWinner() == null; k += 1) {
+            if (k % 500 == 0) {
+                before.copy(B);
+                B.takeChanges();
+            }
+            int count = B.legalMoves(B.whoseMove(), moves);
+            B.addSpot(B.whoseMove(), moves[random.nextInt(count)]);
+            if (k % 500 == 10) {
+                B.undo();
+                assertChanges(before, B, B.takeChanges());
+            }
+        }
+        assertCounts(B);
+        B.clear(N);
+        assertEquals("all squares after clear", N * N,
+                     B.takeChanges().length);
+    }
+
+    /** Checks that CHANGES lists each square that differs between BEFORE
+     *  and AFTER exactly once. */
+    private void assertChanges(Board before, Board after, int[] changes) {
+        boolean[] changed = new boolean[after.size() * after.size()];
+        for (int n : changes) {
+            assertFalse("square listed twice", changed[n]);
+            changed[n] = true;
+        }
+        for (int n = 0; n < changed.length; n += 1) {
+            if (!changed[n]) {
+                assertEquals("unlisted change", before.cell(n),
+                             after.cell(n));
+            }
+        }
+    }
+
+    /** Checks that the bitboards of B agree with its contents. */
+    private void assertBitboards(Board B) {
+        for (int n = 0; n < B.size() * B.size(); n += 1) {
+            long bit = 1L << n;
+            String msg = String.format("square %d of %s", n, B);
+            for (Side side : Side.values()) {
+                assertEquals(msg, B.side(n) == side,
+                             (B.sideMask(side) & bit) != 0);
+            }
+            assertEquals(msg + " critical", B.critical(n),
+                         (B.criticalMask() & bit) != 0);
+            long neighbors = 0;
+            for (int nb : B.neighborIndexes(B.row(n), B.col(n))) {
+                neighbors |= 1L << nb;
+            }
+            assertEquals(msg + " neighbors", neighbors, B.neighborMask(bit));
+        }
+    }
+
+    /** Checks that the running counts of B agree with its contents. */
+    private void assertCounts(Board B) {
+        int spots, red, blue;
+        spots = red = blue = 0;
+        for (int i = 0; i < B.size() * B.size(); i += 1) {
+            spots += B.get(i).getSpots();
+            red += B.get(i).getSide() == RED ? 1 : 0;
+            blue += B.get(i).getSide() == BLUE ? 1 : 0;
+        }
+        assertEquals("wrong spot count", spots, B.numPieces());
+        assertEquals("wrong red count", red, B.numOfSide(RED));
+        assertEquals("wrong blue count", blue, B.numOfSide(BLUE));
+        assertEquals("wrong white count", B.size() * B.size() - red - blue,
+                     B.numOfSide(WHITE));
+    }
+
     /** Checks that B conforms to the description given by CONTENTS.
      *  CONTENTS should be a sequence of groups of 4 items:
      *  r, c, n, s, where r and c are row and column number of a square of B,
@@ -5,13 +5,28 @@ import ucb.gui2.Pad;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 
 import java.util.concurrent.ArrayBlockingQueue;
 
 
 /** A GUI component that displays a Jump61 board, and converts mouse clicks
  *  on that board to commands that are sent to the current Game.
+ *
+ *  The board is drawn into an off-screen image as updates arrive, on the
+ *  thread that delivers them, and only the squares an update reports as
+ *  changed are redrawn.  Each is drawn by copying a tile (an image of a
+ *  square of one color holding some number of spots) that is rendered
+ *  once and cached.  The widget then asks Swing to repaint just the
+ *  rectangle enclosing the changed squares, and painting copies that
+ *  part of the image to the screen.  So the event-dispatch thread does
+ *  no drawing of its own, and a move costs time proportional to the
+ *  squares its cascade touches rather than to the size of the board.
+ *  Squares shrink on large boards so that the board fits in
+ *  MAX_BOARD_PIXELS; squares too small for spots are instead shaded
+ *  darker the more spots they hold.
  *  @author Desiree Garcia
  */
 class BoardWidget extends Pad {
@@ -24,8 +39,15 @@ class BoardWidget extends Pad {
     private static final int SPOT_MARGIN = 10;
     /** Width of the bars separating squares in pixels. */
     private static final int SEPARATOR_SIZE = 3;
-    /** Width of square plus one separator. */
-    private static final int SQUARE_SEP = SQUARE_SIZE + SEPARATOR_SIZE;
+    /** Largest width and height of the displayed board in pixels, beyond
+     *  which squares are made smaller than SQUARE_SIZE. */
+    private static final int MAX_BOARD_PIXELS = 800;
+    /** Smallest width of a square in pixels. */
+    private static final int MIN_SQUARE_SIZE = 1;
+    /** Smallest width of a square in pixels in which spots are drawn. */
+    private static final int MIN_SPOTTED_SIZE = 2 * SPOT_MARGIN + SPOT_DIM;
+    /** Number of distinct shades of a square too small for spots. */
+    private static final int SHADES = 8;
 
     /** Colors of various parts of the displayed board. */
     private static final Color
@@ -39,23 +61,152 @@ class BoardWidget extends Pad {
      *  converts mouse clicks to commands to COMMANDQUEUE. */
     BoardWidget(ArrayBlockingQueue<String> commandQueue) {
         _commandQueue = commandQueue;
-        _side = 6 * SQUARE_SEP + SEPARATOR_SIZE;
+        setGeometry(6);
         setMouseHandler("click", this::doClick);
     }
 
+    /** Update my display to show BOARD.  Equivalent to update(BOARD,
+     *  null). */
+    boolean update(Board board) {
+        return update(board, null);
+    }
 
-    /** Update my display to show BOARD.  Here, we save a copy of
-     *  BOARD (so that we can deal with changes to it only when we are ready
-     *  for them), and recompute the size of the displayed board. */
-    synchronized void update(Board board) {
-        if (board.equals(_board)) {
-            return;
+    /** Update my display to show BOARD, given that only the squares whose
+     *  numbers are in CHANGED differ from the board I am showing (all of
+     *  them, if CHANGED is null).  Here, we save a snapshot of BOARD (so
+     *  that we can deal with changes to it only when we are ready for
+     *  them), redraw the changed squares in my image, and ask for the
+     *  rectangle around them to be repainted.  Since BOARD returns the
+     *  same snapshot until it changes, an unchanged board is recognized
+     *  without comparing squares.  Returns true iff my size has changed,
+     *  so that my container must be laid out again. */
+    synchronized boolean update(Board board, int[] changed) {
+        Board snapshot = board.snapshot();
+        if (snapshot == _board) {
+            return false;
         }
-        if (_board != null && _board.size() != board.size()) {
+        boolean resized = _board == null || _board.size() != board.size();
+        if (resized) {
+            setGeometry(board.size());
             invalidate();
         }
-        _board = new Board(board);
-        _side = _board.size() * SQUARE_SEP + SEPARATOR_SIZE;
+        boolean redrawAll = resized || changed == null
+            || _board.topology() != snapshot.topology();
+        _board = snapshot;
+        Graphics2D g = _image.createGraphics();
+        if (redrawAll) {
+            g.setColor(SEPARATOR_COLOR);
+            g.fillRect(0, 0, _side, _side);
+            for (int n = 0; n < _board.size() * _board.size(); n += 1) {
+                drawSquare(g, n);
+            }
+            g.dispose();
+            repaint();
+            return resized;
+        }
+        Rectangle dirty = null;
+        for (int n : changed) {
+            drawSquare(g, n);
+            Rectangle square = squareBounds(n);
+            if (dirty == null) {
+                dirty = square;
+            } else {
+                dirty.add(square);
+            }
+        }
+        g.dispose();
+        if (dirty != null) {
+            repaint(dirty);
+        }
+        return false;
+    }
+
+    /** Set my square size, separator width, overall size, and image for
+     *  an N x N board. */
+    private void setGeometry(int N) {
+        _separator = SEPARATOR_SIZE;
+        _squareSize = squareSize(N, _separator);
+        if (_squareSize < MIN_SPOTTED_SIZE) {
+            _separator = 1;
+            _squareSize = squareSize(N, _separator);
+            if (_squareSize < MIN_SPOTTED_SIZE / 2) {
+                _separator = 0;
+                _squareSize = Math.max(MIN_SQUARE_SIZE,
+                                       squareSize(N, _separator));
+            }
+        }
+        _squareSep = _squareSize + _separator;
+        _side = N * _squareSep + _separator;
+        _image = new BufferedImage(_side, _side, BufferedImage.TYPE_INT_RGB);
+        _tiles = new BufferedImage[Side.values().length][Board.MAX_SPOTS + 1];
+    }
+
+    /** Return the largest width of the squares of an N x N board,
+     *  separated by bars SEPARATOR pixels wide, that is no more than
+     *  SQUARE_SIZE and fits the board in MAX_BOARD_PIXELS. */
+    private static int squareSize(int N, int separator) {
+        return Math.min(SQUARE_SIZE,
+                        (MAX_BOARD_PIXELS - separator) / N - separator);
+    }
+
+    /** Return the bounds of square #N in my image. */
+    private Rectangle squareBounds(int n) {
+        return new Rectangle(_separator + _board.col(n) * _squareSep
+                             - _squareSep,
+                             _separator + _board.row(n) * _squareSep
+                             - _squareSep,
+                             _squareSize, _squareSize);
+    }
+
+    /** Draw square #N of my board on G, which draws on my image. */
+    private void drawSquare(Graphics2D g, int n) {
+        Rectangle square = squareBounds(n);
+        g.drawImage(tile(_board.side(n), _board.spots(n),
+                         _board.neighbors(n)),
+                    square.x, square.y, null);
+    }
+
+    /** Return the tile for a square of color SIDE holding SPOTS spots,
+     *  rendering it on first use.  CAPACITY is the number of spots the
+     *  square may hold, used to shade squares too small for spots. */
+    private BufferedImage tile(Side side, int spots, int capacity) {
+        BufferedImage[] tiles = _tiles[side.ordinal()];
+        if (_squareSize < MIN_SPOTTED_SIZE) {
+            spots = Math.min(SHADES - 1, spots * (SHADES - 1) / capacity);
+        }
+        if (tiles[spots] == null) {
+            BufferedImage tile =
+                new BufferedImage(_squareSize, _squareSize,
+                                  BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = tile.createGraphics();
+            Color tint = tint(side);
+            if (_squareSize < MIN_SPOTTED_SIZE) {
+                for (int k = 0; k < spots; k += 1) {
+                    tint = tint.darker();
+                }
+                g.setColor(tint);
+                g.fillRect(0, 0, _squareSize, _squareSize);
+            } else {
+                g.setColor(tint);
+                g.fillRect(0, 0, _squareSize, _squareSize);
+                displaySpots(g, spots);
+            }
+            g.dispose();
+            tiles[spots] = tile;
+        }
+        return tiles[spots];
+    }
+
+    /** Return the color of a square of color SIDE. */
+    private static Color tint(Side side) {
+        switch (side) {
+        case RED:
+            return RED_TINT;
+        case BLUE:
+            return BLUE_TINT;
+        default:
+            return NEUTRAL;
+        }
     }
 
     @Override
@@ -78,11 +229,46 @@ class BoardWidget extends Pad {
         if (_board == null) {
             return;
         }
+        g.drawImage(_image, 0, 0, null);
     }
 
-    /** Color and display the spots on the square at row R and column C
-     *  on G.  (Used by paintComponent). */
-    private void displaySpots(Graphics2D g, int r, int c) {
+    /** Display SPOTS spots on a tile on G: in the usual patterns of dice
+     *  for up to five, and otherwise in rows.  (Used by tile.) */
+    private void displaySpots(Graphics2D g, int spots) {
+        int lo = SPOT_MARGIN, hi = _squareSize - SPOT_MARGIN,
+            mid = _squareSize / 2;
+        switch (spots) {
+        case 0:
+            break;
+        case 1:
+            spot(g, mid, mid);
+            break;
+        case 2:
+            spot(g, lo, lo);
+            spot(g, hi, hi);
+            break;
+        case 3:
+            spot(g, lo, lo);
+            spot(g, mid, mid);
+            spot(g, hi, hi);
+            break;
+        case 5:
+            spot(g, mid, mid);
+            /* Fall through */
+        case 4:
+            spot(g, lo, lo);
+            spot(g, hi, lo);
+            spot(g, lo, hi);
+            spot(g, hi, hi);
+            break;
+        default:
+            int columns = (int) Math.ceil(Math.sqrt(spots)),
+                rows = (spots + columns - 1) / columns;
+            for (int k = 0; k < spots; k += 1) {
+                spot(g, lo + (hi - lo) * (k % columns) / (columns - 1),
+                     lo + (hi - lo) * (k / columns) / Math.max(1, rows - 1));
+            }
+        }
     }
 
     /** Draw one spot centered at position (X, Y) on G. */
@@ -91,19 +277,38 @@ class BoardWidget extends Pad {
         g.fillOval(x - SPOT_DIM / 2, y - SPOT_DIM / 2, SPOT_DIM, SPOT_DIM);
     }
 
-    /** Respond to the mouse click depicted by EVENT. */
-    public void doClick(String dummy, MouseEvent event) {
-        int x = event.getX() - SEPARATOR_SIZE,
-            y = event.getY() - SEPARATOR_SIZE;
-        int r = 1;
-        int c = 1;
-        _commandQueue.offer(String.format("%d %d", r, c));
+    /** Respond to the mouse click depicted by EVENT by sending the move
+     *  to the square under it, if any. */
+    public synchronized void doClick(String dummy, MouseEvent event) {
+        int x = event.getX() - _separator,
+            y = event.getY() - _separator;
+        if (_board == null || x < 0 || y < 0
+            || x % _squareSep >= _squareSize
+            || y % _squareSep >= _squareSize) {
+            return;
+        }
+        int r = y / _squareSep + 1;
+        int c = x / _squareSep + 1;
+        if (_board.exists(r, c)) {
+            _commandQueue.offer(String.format("%d %d", r, c));
+        }
     }
 
     /** The Board I am displaying. */
     private Board _board;
     /** Dimension in pixels of one side of the board. */
     private int _side;
+    /** Dimension in pixels of one side of a square, and of a square plus
+     *  one separator. */
+    private int _squareSize, _squareSep;
+    /** Width in pixels of the bars separating squares. */
+    private int _separator;
+    /** The displayed board, as last updated. */
+    private BufferedImage _image;
+    /** Cached images of squares of the current size, indexed by side
+     *  ordinal and number of spots (or shade, for squares too small for
+     *  spots), or null if not yet rendered. */
+    private BufferedImage[][] _tiles;
     /** Destination for commands derived from mouse clicks. */
     private ArrayBlockingQueue<String> _commandQueue;
 }
@@ -23,11 +23,76 @@ class ConstantBoard extends Board {
         return _board.size();
     }
 
+    @Override
+    Board backingBoard() {
+        return _board.backingBoard();
+    }
+
+    @Override
+    Board snapshot() {
+        return _board.snapshot();
+    }
+
+    @Override
+    Topology topology() {
+        return _board.topology();
+    }
+
     @Override
     Square get(int n) {
         return _board.get(n);
     }
 
+    @Override
+    int cell(int n) {
+        return _board.cell(n);
+    }
+
+    @Override
+    int spots(int n) {
+        return _board.spots(n);
+    }
+
+    @Override
+    Side side(int n) {
+        return _board.side(n);
+    }
+
+    @Override
+    int neighbors(int n) {
+        return _board.neighbors(n);
+    }
+
+    @Override
+    int neighborsOfSide(int n, Side side) {
+        return _board.neighborsOfSide(n, side);
+    }
+
+    @Override
+    int legalMoves(Side player, int first, int[] moves) {
+        return _board.legalMoves(player, first, moves);
+    }
+
+    @Override
+    boolean hasBitboards() {
+        return _board.hasBitboards();
+    }
+
+    @Override
+    long sideMask(Side side) {
+        return _board.sideMask(side);
+    }
+
+    @Override
+    long criticalMask() {
+        return _board.criticalMask();
+    }
+
+    @Override
+    long neighborMask(long squares) {
+        return _board.neighborMask(squares);
+    }
+
     @Override
     int numPieces() {
         return _board.numPieces();
@@ -53,6 +118,41 @@ class ConstantBoard extends Board {
         return _board.numOfSide(color);
     }
 
+    @Override
+    int feature(Side side, int f) {
+        return _board.feature(side, f);
+    }
+
+    @Override
+    int cascadeReach(int n) {
+        return _board.cascadeReach(n);
+    }
+
+    @Override
+    int cascadeCaptures(Side player, int n) {
+        return _board.cascadeCaptures(player, n);
+    }
+
+    @Override
+    boolean cascadeWins(Side player, int n) {
+        return _board.cascadeWins(player, n);
+    }
+
+    @Override
+    int spotsOfSide(Side side) {
+        return _board.spotsOfSide(side);
+    }
+
+    @Override
+    long positionKey() {
+        return _board.positionKey();
+    }
+
+    @Override
+    long version() {
+        return _board.version();
+    }
+
     @Override
     public boolean equals(Object obj) {
         return _board.equals(obj);
@@ -69,6 +169,10 @@ class ConstantBoard extends Board {
     void clear(int N) {
     }
 
+    @Override
+    void clear(Topology topology) {
+    }
+
     @Override
     void copy(Board board) {
     }
@@ -89,6 +193,18 @@ class ConstantBoard extends Board {
     void undo() {
     }
 
+    @Override
+    void trackChanges(boolean on) {
+    }
+
+    @Override
+    void trackFeatures(boolean on) {
+    }
+
+    @Override
+    void trackCascades(boolean on) {
+    }
+
     /** Board to which all operations are delegated. */
     private Board _board;
 
@@ -0,0 +1,274 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** The connected components of the critical squares of a Board (those
+ *  holding as many spots as they have neighbors, of any color), as a
+ *  union-find structure that the Board keeps up to date as it changes.
+ *
+ *  A spot added to a critical square makes it jump, which adds a spot
+ *  to each neighbor, making each critical neighbor jump in turn.  So a
+ *  move to a critical square makes every square of its component jump
+ *  at least once, and captures every neighbor of those squares (squares
+ *  filled by the cascade may jump as well, capturing more).  From the
+ *  components, Board can thus bound the reach of a cascade, and often
+ *  detect a winning one, without simulating it.
+ *
+ *  A square that becomes critical is joined to its critical neighbors'
+ *  components (union by size, without path compression, so that finds
+ *  take logarithmic time).  A union-find cannot split components, so a
+ *  square that stops being critical, as jumping squares do, leaves the
+ *  structure stale until it is next rebuilt from scratch.  However, every
+ *  change is logged, and the log is marked at the start of each move,
+ *  so that Board.undo can restore the components as they were before
+ *  the move by undoing the changes since the mark.  A search that makes
+ *  quiet moves and takes them back thus never rebuilds.
+ *  @author Desiree Garcia
+ */
+final class CriticalComponents {
+
+    /** Components of the critical squares of boards whose squares are
+     *  arranged as in TOPOLOGY, initially stale. */
+    CriticalComponents(Topology topology) {
+        _topology = topology;
+        int numSquares = topology.numSquares();
+        _parent = new int[numSquares];
+        _size = new int[numSquares];
+        _span = new int[numSquares];
+        _next = new int[numSquares];
+        _stamps = new long[numSquares];
+        _memoKeys = new long[numSquares];
+        _memoValues = new int[numSquares];
+        _stale = true;
+    }
+
+    /** Return my topology. */
+    Topology topology() {
+        return _topology;
+    }
+
+    /** Return true iff I must be rebuilt before use. */
+    boolean stale() {
+        return _stale;
+    }
+
+    /** Record that a critical square has stopped being critical. */
+    void markStale() {
+        _stale = true;
+    }
+
+    /** Rebuild me from scratch, given that the squares whose numbers
+     *  are CRITICAL[0 .. COUNT-1] are critical.  Changes logged so far
+     *  can no longer be undone. */
+    void rebuild(int[] critical, int count) {
+        Arrays.fill(_parent, -1);
+        _logTop = 0;
+        _epoch += 1;
+        _stale = false;
+        for (int k = 0; k < count; k += 1) {
+            add(critical[k]);
+        }
+        _logTop = 0;
+    }
+
+    /** Record that square #N has become critical, joining it to the
+     *  components of its critical neighbors. */
+    void add(int n) {
+        if (_stale) {
+            return;
+        }
+        _parent[n] = n;
+        _size[n] = 1;
+        _span[n] = 1 + _topology.capacity(n);
+        _next[n] = n;
+        log(n);
+        int[] start = _topology.neighborStart(),
+            list = _topology.neighborList();
+        for (int k = start[n]; k < start[n + 1]; k += 1) {
+            int m = list[k];
+            if (_parent[m] >= 0) {
+                union(n, m);
+            }
+        }
+    }
+
+    /** Join the components containing squares #A and #B, if distinct,
+     *  logging the change. */
+    private void union(int a, int b) {
+        int ra = find(a), rb = find(b);
+        if (ra == rb) {
+            return;
+        }
+        if (_size[ra] < _size[rb]) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        _parent[rb] = ra;
+        _size[ra] += _size[rb];
+        _span[ra] += _span[rb];
+        swapNext(ra, rb);
+        log(~rb);
+    }
+
+    /** Exchange the successors of #A and #B in the circular lists of the
+     *  members of components.  If A and B are in different lists, this
+     *  joins them; if in the same one, it splits it in two. */
+    private void swapNext(int a, int b) {
+        int t = _next[a];
+        _next[a] = _next[b];
+        _next[b] = t;
+    }
+
+    /** Append ENTRY to the log: a square number for a square added, and
+     *  its complement for a root joined to another. */
+    private void log(int entry) {
+        if (_logTop == _log.length) {
+            _log = Arrays.copyOf(_log, 2 * _log.length);
+        }
+        _log[_logTop] = entry;
+        _logTop += 1;
+    }
+
+    /** Record the start of move #MOVE (counting from 0), so that
+     *  rollback(MOVE) can restore my current state. */
+    void mark(int move) {
+        if (move == 0) {
+            _logTop = 0;
+        }
+        if (move >= _markLog.length) {
+            int length = Math.max(2 * _markLog.length, move + 1);
+            _markLog = Arrays.copyOf(_markLog, length);
+            _markEpoch = Arrays.copyOf(_markEpoch, length);
+            _markStale = Arrays.copyOf(_markStale, length);
+        }
+        _markLog[move] = _logTop;
+        _markEpoch[move] = _epoch;
+        _markStale[move] = _stale;
+    }
+
+    /** Restore the state I had at mark(MOVE), or make myself stale if I
+     *  have been rebuilt since. */
+    void rollback(int move) {
+        if (_markEpoch[move] != _epoch) {
+            _stale = true;
+            return;
+        }
+        int bottom = _markLog[move];
+        while (_logTop > bottom) {
+            _logTop -= 1;
+            int entry = _log[_logTop];
+            if (entry >= 0) {
+                _parent[entry] = -1;
+            } else {
+                int rb = ~entry, ra = _parent[rb];
+                _size[ra] -= _size[rb];
+                _span[ra] -= _span[rb];
+                _parent[rb] = rb;
+                swapNext(ra, rb);
+            }
+        }
+        _stale = _markStale[move];
+    }
+
+    /** Return true iff square #N is critical.  Requires !stale(). */
+    boolean contains(int n) {
+        return _parent[n] >= 0;
+    }
+
+    /** Return the root of the component containing critical square #N.
+     *  Requires !stale(). */
+    int find(int n) {
+        while (_parent[n] != n) {
+            n = _parent[n];
+        }
+        return n;
+    }
+
+    /** Return the number of squares in the component containing square
+     *  #N, or 0 if N is not critical.  Requires !stale(). */
+    int size(int n) {
+        return _parent[n] < 0 ? 0 : _size[find(n)];
+    }
+
+    /** Return the total, over the squares in the component containing
+     *  critical square #N, of one more than their numbers of neighbors:
+     *  an upper bound on the number of squares in or neighboring the
+     *  component.  Requires !stale(). */
+    int span(int n) {
+        return _span[find(n)];
+    }
+
+    /** Return the next member after #N of the component containing it,
+     *  the members forming a cycle.  Requires !stale(). */
+    int next(int n) {
+        return _next[n];
+    }
+
+    /** Return a value distinct from any returned before, for marking
+     *  squares as visited (see stamps). */
+    long newStamp() {
+        _stamp += 1;
+        return _stamp;
+    }
+
+    /** Return an array with an element for each square, each less than
+     *  any value of newStamp() not yet returned, for callers to mark
+     *  squares visited during one traversal with newStamp(). */
+    long[] stamps() {
+        return _stamps;
+    }
+
+    /** Return the value remembered for the component whose root is ROOT
+     *  under KEY (see remember), or -1 if there is none. */
+    int recall(int root, long key) {
+        return _memoKeys[root] == key ? _memoValues[root] : -1;
+    }
+
+    /** Remember VALUE (non-negative) for the component whose root is
+     *  ROOT under KEY, which must identify both the value's meaning and
+     *  the contents of the board, as no change to either forgets it. */
+    void remember(int root, long key, int value) {
+        _memoKeys[root] = key;
+        _memoValues[root] = value;
+    }
+
+    /** Initial capacity of _log and of the marks. */
+    private static final int INITIAL_LOG_SIZE = 64;
+
+    /** The arrangement of the squares. */
+    private final Topology _topology;
+    /** The parent of each critical square in its component's tree (the
+     *  square itself for the root), or -1 for other squares. */
+    private final int[] _parent;
+    /** For the root of each component, the number of its members. */
+    private final int[] _size;
+    /** For the root of each component, its span(). */
+    private final int[] _span;
+    /** The successor of each critical square in a circular list of the
+     *  members of its component. */
+    private final int[] _next;
+    /** See stamps(). */
+    private final long[] _stamps;
+    /** For each component root, the key and value last remembered. */
+    private final long[] _memoKeys;
+    /** See _memoKeys. */
+    private final int[] _memoValues;
+    /** The last value returned by newStamp. */
+    private long _stamp;
+    /** True iff I do not reflect the board and must be rebuilt. */
+    private boolean _stale;
+    /** The number of times I have been rebuilt, plus one, so that marks
+     *  never made (which are 0) belong to no epoch. */
+    private int _epoch = 1;
+    /** Log of changes since the last rebuild or start of the first move
+     *  (see log), in _log[0 .. _logTop-1]. */
+    private int[] _log = new int[INITIAL_LOG_SIZE];
+    /** Number of entries in _log. */
+    private int _logTop;
+    /** For each move #K, _logTop, _epoch, and _stale at its start. */
+    private int[] _markLog = new int[INITIAL_LOG_SIZE],
+        _markEpoch = new int[INITIAL_LOG_SIZE];
+    /** See _markLog. */
+    private boolean[] _markStale = new boolean[INITIAL_LOG_SIZE];
+}
@@ -11,7 +11,24 @@ class Defaults {
     /** Default board size. */
     static final int BOARD_SIZE = 6;
 
-    /** Maximum number of squares on the side of a game board. */
-    static final int MAX_BOARD_SIZE = 10;
+    /** Maximum number of squares on the side of a game board.  (Board's
+     *  undo log has room for square numbers below 2**24.) */
+    static final int MAX_BOARD_SIZE = 1000;
+
+    /** Minimum time between updates of the display of the board, in
+     *  milliseconds. */
+    static final long VIEW_INTERVAL = 20;
+
+    /** Default time allowed for an AI to choose a move, in milliseconds. */
+    static final long MOVE_TIME = 250;
+
+    /** Default number of threads an AI uses to search. */
+    static final int THREADS = 1;
+
+    /** Capacity, in nodes, of each Monte Carlo search tree. */
+    static final int MCTS_NODES = 1 << 18;
+
+    /** Default size of an AI's transposition table, in megabytes. */
+    static final int TABLE_SIZE = 16;
 
 }
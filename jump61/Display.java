@@ -42,9 +42,14 @@ class Display extends TopLevel implements View, CommandSource, Reporter {
 
     @Override
     public void update(Board board) {
-        _boardWidget.update(board);
-        pack();
-        _boardWidget.repaint();
+        update(board, null);
+    }
+
+    @Override
+    public void update(Board board, int[] changed) {
+        if (_boardWidget.update(board, changed)) {
+            pack();
+        }
     }
 
     @Override
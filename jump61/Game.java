@@ -15,8 +15,8 @@ class Game {
     /** A list of all commands. */
     private static final String[] COMMAND_NAMES = {
         "auto", "board", "clear", "dump", "help", "manual",
-        "new", "q", "quiet", "quit",
-        "seed", "set", "size", "start", "verbose",
+        "new", "perft", "ponder", "q", "quiet", "quit",
+        "seed", "set", "size", "start", "time", "topology", "verbose",
     };
 
     /** A new Game that takes command/move input from INP, logs
@@ -26,14 +26,14 @@ class Game {
      */
     Game(CommandSource inp, View view, Reporter reporter, boolean logging) {
         _inp = inp;
-        _view = view;
         _reporter = reporter;
         _logging = logging;
         _seed = (long) (Math.random() * Long.MAX_VALUE);
 
         _board = new Board(Defaults.BOARD_SIZE);
         _readonlyBoard = new ConstantBoard(_board);
-        _board.setNotifier((b) -> _view.update(b));
+        _updater = new ViewUpdater(_board, view, Defaults.VIEW_INTERVAL);
+        _board.setNotifier((b) -> _updater.changed());
     }
 
     /** Returns a readonly view of the game board.  This board remains valid
@@ -42,6 +42,46 @@ class Game {
         return _readonlyBoard;
     }
 
+    /** Returns the number of milliseconds an AI player may spend choosing
+     *  a move. */
+    long moveTime() {
+        return _moveTime;
+    }
+
+    /** Record that an automated player examined NODES positions (or
+     *  performed NODES playouts) in NANOS nanoseconds. */
+    void recordSearch(long nodes, long nanos) {
+        _searchNodes += nodes;
+        _searchNanos += nanos;
+    }
+
+    /** Returns the total number of positions examined by automated
+     *  players, as reported to recordSearch. */
+    long searchNodes() {
+        return _searchNodes;
+    }
+
+    /** Returns the total time in nanoseconds spent searching by automated
+     *  players, as reported to recordSearch. */
+    long searchNanos() {
+        return _searchNanos;
+    }
+
+    /** Returns true iff AI players should think on their opponents'
+     *  time (see AI). */
+    boolean ponder() {
+        return _ponder;
+    }
+
+    /** Returns the transposition table shared by the AI players of this
+     *  game, creating it on first use. */
+    TranspositionTable table() {
+        if (_table == null) {
+            _table = new TranspositionTable(Main.tableSize());
+        }
+        return _table;
+    }
+
     /** Return true iff the current game is not over. */
     boolean gameInProgress() {
         return _board.getWinner() == null;
@@ -54,14 +94,15 @@ class Game {
         boolean winnerAnnounced;
 
         System.out.println("Welcome to " + Defaults.VERSION);
-        _board.clear(Defaults.BOARD_SIZE);
+        synchronized (_board) {
+            _board.clear(Defaults.BOARD_SIZE);
+        }
         setManual(RED);
         setAuto(BLUE);
         _exit = -1;
         winnerAnnounced = false;
         while (_exit < 0) {
             String cmnd;
-            _view.update(_board);
             if (_board.getWinner() == null) {
                 winnerAnnounced = false;
                 try {
@@ -71,6 +112,7 @@ class Game {
                 }
             } else if (!gameInProgress()) {
                 if (!winnerAnnounced) {
+                    stopThinking();
                     _reporter.announceWin(_board.getWinner());
                     winnerAnnounced = true;
                 }
@@ -102,7 +144,10 @@ class Game {
     /** Add a spot to R C, if legal to do so. */
     void makeMove(int r, int c) {
         assert _board.isLegal(_board.whoseMove(), r, c);
-        _board.addSpot(_board.whoseMove(), r, c);
+        synchronized (_board) {
+            _board.addSpot(_board.whoseMove(), r, c);
+        }
+        _updater.changed();
         if (_verbose) {
             printBoard();
         }
@@ -111,7 +156,10 @@ class Game {
     /** Add a spot to square #N, if legal to do so. */
     void makeMove(int n) {
         assert _board.isLegal(_board.whoseMove(), n);
-        _board.addSpot(_board.whoseMove(), n);
+        synchronized (_board) {
+            _board.addSpot(_board.whoseMove(), n);
+        }
+        _updater.changed();
         if (_verbose) {
             printBoard();
         }
@@ -151,6 +199,33 @@ class Game {
         _seed += 1;
     }
 
+    /** Make the player of COLOR an automated player for subsequent moves,
+     *  as described by the arguments ARGS[2 ..] of an auto command: an
+     *  engine name, "ai" (the default) or "mcts", followed for mcts by
+     *  an optional number of playouts per move (0, the default, means
+     *  to use the time per move instead) and "reuse" (the default) or
+     *  "noreuse" to keep or discard search trees between moves. */
+    private void setAuto(Side color, String[] args) {
+        String engine = args.length > 2 ? args[2] : "ai";
+        switch (engine) {
+        case "ai":
+            setAuto(color);
+            break;
+        case "mcts":
+            int playouts = args.length > 3 ? toInt(args[3]) : 0;
+            String reuse = args.length > 4 ? args[4] : "reuse";
+            if (!reuse.equals("reuse") && !reuse.equals("noreuse")) {
+                throw error("expected reuse or noreuse: %s", reuse);
+            }
+            setPlayer(color, new MctsAI(this, color, _seed, playouts,
+                                        reuse.equals("reuse")));
+            _seed += 1;
+            break;
+        default:
+            throw error("unknown engine: %s", engine);
+        }
+    }
+
     /** Make the player of COLOR take manual input from the user for
      *  subsequent moves. */
     private void setManual(Side color) {
@@ -164,12 +239,43 @@ class Game {
 
     /** Set getPlayer(COLOR) to PLAYER. */
     private void setPlayer(Side color, Player player) {
+        if (_players[color.ordinal()] != null) {
+            _players[color.ordinal()].stopThinking();
+        }
         _players[color.ordinal()] = player;
     }
 
+    /** Have each player stop thinking on its opponent's time. */
+    private void stopThinking() {
+        for (Player player : _players) {
+            if (player != null) {
+                player.stopThinking();
+            }
+        }
+    }
+
+    /** Have AI players think on their opponents' time if ARG is "on",
+     *  and stop if it is "off". */
+    private void setPonder(String arg) {
+        switch (arg) {
+        case "on":
+            _ponder = true;
+            break;
+        case "off":
+            _ponder = false;
+            stopThinking();
+            break;
+        default:
+            throw error("expected on or off: %s", arg);
+        }
+    }
+
     /** Clear the board to its initial state. */
     void clear() {
-        _board.clear(_board.size());
+        stopThinking();
+        synchronized (_board) {
+            _board.clear(_board.size());
+        }
     }
 
     /** Print the current board using standard board-dump format. */
@@ -187,11 +293,46 @@ class Game {
         printHelpResource(HELP, System.out);
     }
 
+    /** Count the move sequences of up to DEPTH moves from the current
+     *  position (see Perft), counting the subtrees of the moves from the
+     *  current position in parallel, and report the totals and the rate
+     *  at which moves were made.  If DIVIDE, also report the totals for
+     *  each of those subtrees. */
+    private void perft(int depth, boolean divide) {
+        if (depth < 1) {
+            throw error("perft depth must be positive");
+        }
+        long start = System.nanoTime();
+        Perft.Counts[] division =
+            Perft.divide(_board, depth, Runtime.getRuntime()
+                         .availableProcessors());
+        long nanos = Math.max(1, System.nanoTime() - start);
+        if (divide) {
+            for (int n = 0; n < division.length; n += 1) {
+                if (division[n] != null) {
+                    _reporter.msg("%d %d: %s", _board.row(n), _board.col(n),
+                                  division[n]);
+                }
+            }
+        }
+        Perft.Counts total = Perft.total(division);
+        _reporter.msg("perft %d: %s (%d ms, %.0f moves/s)", depth, total,
+                      nanos / 1_000_000, total.nodes * 1e9 / nanos);
+    }
+
     /** Seed the random-number generator with SEED. */
     private void setSeed(long seed) {
         _seed = seed;
     }
 
+    /** Allow AI players MILLIS milliseconds per move. */
+    void setMoveTime(long millis) {
+        if (millis <= 0) {
+            throw error("time per move must be positive");
+        }
+        _moveTime = millis;
+    }
+
     /** Place SPOTS spots on square R:C and color the square red or
      *  blue depending on whether COLOR is "r" or "b".  If SPOTS is
      *  0, clears the square, ignoring COLOR.  SPOTS must be less than
@@ -199,7 +340,10 @@ class Game {
     private void setSpots(int r, int c, int spots, String color) {
         if (_board.exists(r, c) && spots >= 0
             && spots <= _board.neighbors(r, c)) {
-            _board.set(r, c, spots, toSide(color));
+            stopThinking();
+            synchronized (_board) {
+                _board.set(r, c, spots, toSide(color));
+            }
         } else {
             throw error("invalid request to put %d spots on square %d %d",
                         spots, r, c);
@@ -207,13 +351,44 @@ class Game {
     }
 
     /** Stop any current game and set the board to an empty N x N board
-     *  with numMoves() == 0.  Requires 2 <= N <= 10. */
-    private void setSize(int n) {
+     *  with numMoves() == 0.  Requires 2 <= N <= Defaults.MAX_BOARD_SIZE. */
+    void setSize(int n) {
         log("size %d", n);
-        if (n < 2 || n > 10) {
-            throw error("size must be between 2 and 10");
+        if (n < 2 || n > Defaults.MAX_BOARD_SIZE) {
+            throw error("size must be between 2 and %d",
+                        Defaults.MAX_BOARD_SIZE);
+        }
+        stopThinking();
+        synchronized (_board) {
+            _board.clear(n);
+        }
+    }
+
+    /** Stop any current game and set the board to an empty board of the
+     *  same size whose squares are arranged as KIND: grid, torus, or hex
+     *  (see Topology.Kind). */
+    private void setTopology(String kind) {
+        Topology.Kind topologyKind;
+        switch (kind) {
+        case "grid":
+            topologyKind = Topology.Kind.GRID;
+            break;
+        case "torus":
+            topologyKind = Topology.Kind.TORUS;
+            break;
+        case "hex":
+            topologyKind = Topology.Kind.HEX;
+            break;
+        default:
+            throw error("unknown topology: %s", kind);
+        }
+        stopThinking();
+        synchronized (_board) {
+            _board.clear(Topology.of(topologyKind, _board.size()));
+        }
+        if (_table != null) {
+            _table.clear();
         }
-        _board.clear(n);
     }
 
     /** Return the full, lower-case command name that uniquely fits
@@ -257,7 +432,7 @@ class Game {
             case "#": case "":
                 break;
             case "auto":
-                setAuto(toSide(parts[1]));
+                setAuto(toSide(parts[1]), parts);
                 break;
             case "board":
                 printBoard();
@@ -274,6 +449,13 @@ class Game {
             case "new":
                 clear();
                 break;
+            case "perft":
+                perft(toInt(parts[1]),
+                      parts.length > 2 && parts[2].equals("divide"));
+                break;
+            case "ponder":
+                setPonder(parts[1]);
+                break;
             case "quiet":
                 _verbose = false;
                 break;
@@ -290,6 +472,12 @@ class Game {
             case "size":
                 setSize(toInt(parts[1]));
                 break;
+            case "time":
+                setMoveTime(toLong(parts[1]));
+                break;
+            case "topology":
+                setTopology(parts[1]);
+                break;
             case "verbose":
                 _verbose = true;
                 break;
@@ -330,17 +518,28 @@ class Game {
     /** Outlet for responses to the user. */
     private final Reporter _reporter;
 
-    /** The board on which I record all moves. */
+    /** The board on which I record all moves.  Changed only while
+     *  holding its lock, since _updater reads it from another thread. */
     private final Board _board;
     /** A readonly view of _board. */
     private final Board _readonlyBoard;
-    /** Displayer of boards. */
-    private View _view;
+    /** Search results shared by my AI players, or null if not yet
+     *  needed. */
+    private TranspositionTable _table;
+    /** Delivers changes to _board to the displayer of boards. */
+    private final ViewUpdater _updater;
     /** True iff we are logging commands. */
     private boolean _logging;
 
     /** True iff we should print the board after each move. */
     private boolean _verbose;
+    /** True iff AI players should think on their opponents' time. */
+    private boolean _ponder;
+    /** Total positions examined and nanoseconds spent by automated
+     *  players. */
+    private long _searchNodes, _searchNanos;
+    /** Milliseconds an AI player may spend choosing a move. */
+    private long _moveTime = Defaults.MOVE_TIME;
     /** Current pseudo-random number seed.  Provided as an argument to AIs
      *  that use a random element in their choices.  Incremented for each
      *  AI to which it is supplied.
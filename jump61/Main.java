@@ -24,7 +24,10 @@ public class Main {
     public static void main(String[] args0) {
         CommandArgs args =
             new CommandArgs("--display{0,1} --strict{0,1} --version{0,1}"
-                            + " --debug=(\\d+){0,1} --log --=(.*){0,}", args0);
+                            + " --debug=(\\d+){0,1} --table=(\\d+){0,1}"
+                            + " --threads=(\\d+){0,1} --book=(.+){0,1}"
+                            + " --tablebase=(.+){0,1}"
+                            + " --log --=(.*){0,}", args0);
 
         if (!args.ok()) {
             usage();
@@ -41,6 +44,28 @@ public class Main {
         if (args.contains("--debug")) {
             Utils.setMessageLevel(args.getInt("--debug"));
         }
+        if (args.contains("--table")) {
+            _tableSize = args.getInt("--table");
+        }
+        if (args.contains("--threads")) {
+            _threads = Math.max(1, args.getInt("--threads"));
+        }
+        if (args.contains("--book")) {
+            try {
+                _book = OpeningBook.open(args.getFirst("--book"));
+            } catch (GameException excp) {
+                System.err.println(excp.getMessage());
+                System.exit(1);
+            }
+        }
+        if (args.contains("--tablebase")) {
+            try {
+                _tablebase = Tablebase.open(args.getFirst("--tablebase"));
+            } catch (GameException excp) {
+                System.err.println(excp.getMessage());
+                System.exit(1);
+            }
+        }
 
         Game game;
         if (args.contains("--display")) {
@@ -78,6 +103,39 @@ public class Main {
         return _strict;
     }
 
+    /** Return the size in megabytes of the transposition table used by
+     *  AI players. */
+    static int tableSize() {
+        return _tableSize;
+    }
+
+    /** Return the number of threads each AI player uses to search. */
+    static int threads() {
+        return _threads;
+    }
+
+    /** Return the opening book used by AI players, or null if none. */
+    static OpeningBook book() {
+        return _book;
+    }
+
+    /** Have AI players use BOOK as their opening book (none if
+     *  null). */
+    static void setBook(OpeningBook book) {
+        _book = book;
+    }
+
+    /** Return the tablebase used by AI players, or null if none. */
+    static Tablebase tablebase() {
+        return _tablebase;
+    }
+
+    /** Have AI players play perfectly in the positions in TABLEBASE (none
+     *  if null). */
+    static void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
     /** Print usage message. */
     private static void usage() {
         printHelpResource(USAGE, System.err);
@@ -85,6 +143,14 @@ public class Main {
 
     /** True if we are to run in strict mode. */
     private static boolean _strict;
+    /** Transposition table size in megabytes. */
+    private static int _tableSize = Defaults.TABLE_SIZE;
+    /** Number of search threads per AI player. */
+    private static int _threads = Defaults.THREADS;
+    /** Opening book of AI players, or null. */
+    private static OpeningBook _book;
+    /** Tablebase of AI players, or null. */
+    private static Tablebase _tablebase;
     /** True if we should log moves and commands. */
     private static boolean _log;
 
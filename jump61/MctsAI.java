@@ -0,0 +1,96 @@
+package jump61;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/** An automated Player that chooses moves by Monte Carlo tree search
+ *  rather than by evaluating positions.  With Main.threads() > 1, it
+ *  grows an independent tree in each thread and combines their root
+ *  statistics ("root parallelization").
+ *  @author Desiree Garcia
+ */
+class MctsAI extends Player {
+
+    /** A new player of GAME initially COLOR that chooses moves by Monte
+     *  Carlo tree search.  SEED determines its random playouts.  Each
+     *  move uses PLAYOUTS playouts or, if PLAYOUTS <= 0, the game's time
+     *  per move.  If REUSE, keeps the part of its trees still relevant
+     *  after each pair of moves. */
+    MctsAI(Game game, Side color, long seed, int playouts, boolean reuse) {
+        super(game, color);
+        _playouts = playouts;
+        _reuse = reuse;
+        _trees = new MctsTree[Main.threads()];
+        for (int k = 0; k < _trees.length; k += 1) {
+            _trees[k] = new MctsTree(Defaults.MCTS_NODES, seed + k);
+        }
+    }
+
+    @Override
+    String getMove() {
+        Board board = getBoard();
+        assert getSide() == board.whoseMove();
+        int choice = searchForMove(board);
+        getGame().reportMove(board.row(choice), board.col(choice));
+        return board.moveString(choice);
+    }
+
+    /** Return the most visited move from BOARD after searching all my
+     *  trees in parallel. */
+    private int searchForMove(Board board) {
+        long start = System.nanoTime();
+        long deadline = start + getGame().moveTime() * 1_000_000L;
+        int playouts = _playouts <= 0 ? 0
+            : Math.max(1, _playouts / _trees.length);
+        ArrayList<Future<Integer>> results = new ArrayList<>();
+        for (MctsTree tree : _trees) {
+            if (_reuse) {
+                tree.advance(board);
+            } else {
+                tree.reset(board);
+            }
+        }
+        for (int k = 1; k < _trees.length; k += 1) {
+            MctsTree tree = _trees[k];
+            results.add(AI.helperPool().submit(
+                () -> tree.search(playouts, deadline)));
+        }
+        long total = _trees[0].search(playouts, deadline);
+        for (Future<Integer> result : results) {
+            try {
+                total += result.get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new Error("helper search failed", excp);
+            }
+        }
+
+        long[] visits = new long[board.size() * board.size()];
+        for (MctsTree tree : _trees) {
+            tree.addRootVisits(visits);
+        }
+        int best = -1;
+        for (int n = 0; n < visits.length; n += 1) {
+            if (board.isLegal(getSide(), n)
+                && (best < 0 || visits[n] > visits[best])) {
+                best = n;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long millis = Math.max(1, nanos / 1_000_000);
+        getGame().recordSearch(total, nanos);
+        Utils.debug(1, "%s: %d of %d playouts, %d playouts/s, %d nodes",
+                    board.moveString(best), visits[best], total,
+                    total * 1000 / millis, _trees[0].numNodes());
+        return best;
+    }
+
+    /** Playouts per move, or <= 0 to use the game's time per move. */
+    private final int _playouts;
+
+    /** True iff trees are kept from one move to the next. */
+    private final boolean _reuse;
+
+    /** One search tree per thread. */
+    private final MctsTree[] _trees;
+}
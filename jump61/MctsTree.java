@@ -0,0 +1,305 @@
+package jump61;
+
+import java.util.Random;
+
+import static jump61.Side.RED;
+import static jump61.Side.BLUE;
+
+/** A Monte Carlo search tree (UCT) for the positions reachable from one
+ *  position.  Each playout descends the tree choosing children by the
+ *  UCB1 rule, expands the node it reaches, finishes the game with random
+ *  moves, and credits the result to the nodes it passed through.
+ *
+ *  Nodes are kept in parallel primitive arrays of fixed capacity, the
+ *  children of a node being consecutive, and playouts are made (and
+ *  then undone) on a single Board owned by the tree, so that searching
+ *  allocates nothing.  When the arrays are full, the tree stops growing
+ *  but playouts continue.
+ *  @author Desiree Garcia
+ */
+class MctsTree {
+
+    /** A tree with room for CAPACITY nodes whose random playouts are
+     *  determined by SEED.  It must be reset before searching. */
+    MctsTree(int capacity, long seed) {
+        _move = new int[capacity];
+        _firstChild = new int[capacity];
+        _numChildren = new int[capacity];
+        _visits = new int[capacity];
+        _wins = new float[capacity];
+        _forward = new int[capacity];
+        _random = new Random(seed);
+    }
+
+    /** Discard all nodes, and make the root represent POSITION. */
+    void reset(Board position) {
+        if (_board == null || _board.size() != position.size()) {
+            int numSquares = position.size() * position.size();
+            _board = new Board(position.size());
+            _moves = new int[numSquares];
+            _path = new int[PATH_LIMIT * (numSquares + 1)];
+        }
+        _board.copy(position);
+        _root = 0;
+        _numNodes = 1;
+        initNode(_root, -1);
+    }
+
+    /** Make the root represent POSITION, keeping the subtree already
+     *  built for it if it is the root position or is reached from it in
+     *  one or two moves, moved to the front of my arrays (see compact).
+     *  Otherwise, same as reset(POSITION). */
+    void advance(Board position) {
+        if (_board == null || _board.size() != position.size()) {
+            reset(position);
+            return;
+        }
+        long key = position.positionKey();
+        int next = -1;
+        if (_board.positionKey() == key && _board.equals(position)) {
+            next = _root;
+        }
+        for (int c = first(_root); next < 0 && c < end(_root); c += 1) {
+            _board.addSpot(_board.whoseMove(), _move[c]);
+            if (_board.positionKey() == key && _board.equals(position)) {
+                next = c;
+            }
+            for (int g = first(c); next < 0 && g < end(c); g += 1) {
+                _board.addSpot(_board.whoseMove(), _move[g]);
+                if (_board.positionKey() == key && _board.equals(position)) {
+                    next = g;
+                }
+                _board.undo();
+            }
+            _board.undo();
+        }
+        if (next < 0) {
+            reset(position);
+        } else {
+            _board.copy(position);
+            compact(next);
+        }
+    }
+
+    /** Discard all nodes but NODE and its descendants, and make NODE the
+     *  root, sliding the nodes kept to the front of my arrays in their
+     *  present order, so that the space freed is available for growth.
+     *  Children always follow their parents in the arrays (a node's
+     *  children being added after it), so one pass in order finds the
+     *  nodes to keep, another numbers them, and a third moves each to a
+     *  position no later than its own, after the nodes before it have
+     *  been moved. */
+    private void compact(int node) {
+        for (int n = 0; n < _numNodes; n += 1) {
+            _forward[n] = n == node ? 0 : -1;
+        }
+        for (int n = node; n < _numNodes; n += 1) {
+            if (_forward[n] == 0) {
+                for (int c = first(n); c < end(n); c += 1) {
+                    _forward[c] = 0;
+                }
+            }
+        }
+        int numKept = 0;
+        for (int n = node; n < _numNodes; n += 1) {
+            if (_forward[n] == 0) {
+                _forward[n] = numKept;
+                numKept += 1;
+            } else {
+                _forward[n] = -1;
+            }
+        }
+        for (int n = node; n < _numNodes; n += 1) {
+            int k = _forward[n];
+            if (k >= 0) {
+                _move[k] = _move[n];
+                _firstChild[k] =
+                    _numChildren[n] > 0 ? _forward[_firstChild[n]] : 0;
+                _numChildren[k] = _numChildren[n];
+                _visits[k] = _visits[n];
+                _wins[k] = _wins[n];
+            }
+        }
+        _root = 0;
+        _numNodes = numKept;
+    }
+
+    /** Perform playouts from the root until PLAYOUTS have been done or,
+     *  if PLAYOUTS <= 0, until System.nanoTime() passes DEADLINE.  Return
+     *  the number of playouts performed. */
+    int search(int playouts, long deadline) {
+        int count;
+        for (count = 0; playouts <= 0 || count < playouts; count += 1) {
+            if ((count & CLOCK_CHECK_MASK) == 0 && playouts <= 0
+                && count > 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            playout();
+        }
+        return count;
+    }
+
+    /** Add the number of visits to each move from the root to
+     *  VISITS[square number]. */
+    void addRootVisits(long[] visits) {
+        for (int c = first(_root); c < end(_root); c += 1) {
+            visits[_move[c]] += _visits[c];
+        }
+    }
+
+    /** Return the number of nodes in use. */
+    int numNodes() {
+        return _numNodes;
+    }
+
+    /** Perform one playout from the root, and restore the board. */
+    private void playout() {
+        Board board = _board;
+        int depth, node;
+        depth = 0;
+        node = _root;
+        _path[depth++] = node;
+        while (board.getWinner() == null && _numChildren[node] > 0
+               && depth < _path.length - 1) {
+            node = select(node);
+            board.addSpot(board.whoseMove(), _move[node]);
+            _path[depth++] = node;
+        }
+        int treeMoves = depth - 1;
+        if (board.getWinner() == null && _visits[node] > 0
+            && _numChildren[node] == 0) {
+            expand(node);
+            if (_numChildren[node] > 0) {
+                node = first(node) + _random.nextInt(_numChildren[node]);
+                board.addSpot(board.whoseMove(), _move[node]);
+                _path[depth++] = node;
+                treeMoves += 1;
+            }
+        }
+        int randomMoves = 0, limit = PATH_LIMIT * _moves.length;
+        while (board.getWinner() == null && randomMoves < limit) {
+            Side player = board.whoseMove();
+            int count = board.legalMoves(player, _moves);
+            board.addSpot(player, _moves[_random.nextInt(count)]);
+            randomMoves += 1;
+        }
+        float redScore = score(board);
+        for (int k = 0; k < randomMoves + treeMoves; k += 1) {
+            board.undo();
+        }
+        Side mover = board.whoseMove();
+        for (int k = 1; k < depth; k += 1) {
+            int n = _path[k];
+            _visits[n] += 1;
+            _wins[n] += mover == RED ? redScore : 1 - redScore;
+            mover = mover.opposite();
+        }
+        _visits[_root] += 1;
+    }
+
+    /** Return the child of NODE with the largest UCB1 value, trying
+     *  unvisited children first. */
+    private int select(int node) {
+        double logN = Math.log(_visits[node]);
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int c = first(node); c < end(node); c += 1) {
+            if (_visits[c] == 0) {
+                return c;
+            }
+            double value = _wins[c] / _visits[c]
+                + EXPLORATION * Math.sqrt(logN / _visits[c]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /** Add children to NODE for all legal moves in the current position
+     *  of my board, if there is room. */
+    private void expand(int node) {
+        Side player = _board.whoseMove();
+        int count = _board.legalMoves(player, _moves);
+        if (_numNodes + count > _move.length) {
+            return;
+        }
+        _firstChild[node] = _numNodes;
+        _numChildren[node] = count;
+        for (int k = 0; k < count; k += 1) {
+            initNode(_numNodes, _moves[k]);
+            _numNodes += 1;
+        }
+    }
+
+    /** Initialize node #N as an unexpanded, unvisited node reached by
+     *  MOVE. */
+    private void initNode(int n, int move) {
+        _move[n] = move;
+        _firstChild[n] = 0;
+        _numChildren[n] = 0;
+        _visits[n] = 0;
+        _wins[n] = 0;
+    }
+
+    /** Return the index of the first child of NODE. */
+    private int first(int node) {
+        return _firstChild[node];
+    }
+
+    /** Return one more than the index of the last child of NODE. */
+    private int end(int node) {
+        return _firstChild[node] + _numChildren[node];
+    }
+
+    /** Return the result of the finished (or abandoned) game on BOARD
+     *  for Red: 1 for a win, 0 for a loss.  Abandoned games go to the
+     *  side with more squares, and are otherwise drawn (1/2). */
+    private static float score(Board board) {
+        int margin = board.numOfSide(RED) - board.numOfSide(BLUE);
+        return margin > 0 ? 1 : margin < 0 ? 0 : 0.5f;
+    }
+
+    /** The exploration constant in the UCB1 formula. */
+    static final double EXPLORATION = Math.sqrt(2);
+
+    /** Random playouts are abandoned after this many moves per square. */
+    private static final int PATH_LIMIT = 8;
+
+    /** The search checks the clock whenever the number of playouts has
+     *  all these bits clear. */
+    private static final int CLOCK_CHECK_MASK = 0x3f;
+
+    /** For each node, the square number of the move leading to it, the
+     *  index of its first child, its number of children (0 if
+     *  unexpanded), and the number of playouts through it. */
+    private final int[] _move, _firstChild, _numChildren, _visits;
+
+    /** For each node, the playout score through it for the player who
+     *  made its move. */
+    private final float[] _wins;
+
+    /** Used by compact to map the indices of the nodes kept to their
+     *  new indices (or -1 for those discarded).  Allocated here to avoid
+     *  allocations. */
+    private final int[] _forward;
+
+    /** Number of nodes in use. */
+    private int _numNodes;
+
+    /** Index of the root node. */
+    private int _root;
+
+    /** The root position, on which playouts are made. */
+    private Board _board;
+
+    /** Buffer for legal moves. */
+    private int[] _moves;
+
+    /** Nodes visited by the current playout, from the root. */
+    private int[] _path;
+
+    /** Source of random playout moves. */
+    private final Random _random;
+}
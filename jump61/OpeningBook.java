@@ -0,0 +1,254 @@
+package jump61;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ucb.util.CommandArgs;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static jump61.GameException.error;
+import static jump61.Utils.*;
+
+/** A book of opening moves: for each position reached by the first few
+ *  moves of games on square grids, the move chosen by a long search, so
+ *  that an AI can play it at once rather than search.
+ *
+ *  A book is made offline by running this class (see main), which
+ *  searches the positions of each board size in parallel and writes a
+ *  file holding, after a header, one entry per position sorted by key.
+ *  An entry is a bookKey (a long) followed by a square number (an int),
+ *  all big-endian.  open() maps such a file into memory, so that opening
+ *  costs nothing however large the book, and probe() finds a position by
+ *  binary search of the mapped entries without allocating.  Keys depend
+ *  on Board.positionKey, so a book must be regenerated if that changes.
+ *
+ *  Usage: java jump61.OpeningBook --out=FILE [--sizes=S1,S2,...]
+ *                                 [--plies=N] [--time=MILLIS]
+ *                                 [--threads=P]
+ *  which searches every position reached by fewer than N moves from the
+ *  start of a game on each board size for MILLIS milliseconds, using P
+ *  threads, and writes the book to FILE.
+ *  @author Desiree Garcia
+ */
+class OpeningBook {
+
+    /** Number identifying a book file. */
+    static final int MAGIC = 0x4A363142;
+
+    /** Version of the file format and of the keys it uses. */
+    static final int FORMAT = 1;
+
+    /** Number of bytes in the header: MAGIC, FORMAT, and the number of
+     *  entries. */
+    static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    /** Number of bytes in one entry. */
+    static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+    /** Make the book described by ARGS0 (see above). */
+    public static void main(String[] args0) {
+        CommandArgs args =
+            new CommandArgs("--out=(.+) --sizes=(\\d+(,\\d+)*){0,1}"
+                            + " --plies=(\\d+){0,1} --time=(\\d+){0,1}"
+                            + " --threads=(\\d+){0,1}", args0);
+        if (!args.ok()) {
+            System.err.println("Usage: java jump61.OpeningBook --out=FILE"
+                               + " [--sizes=S,...] [--plies=N]"
+                               + " [--time=MILLIS] [--threads=P]");
+            System.exit(1);
+        }
+        try {
+            int plies = toInt(option(args, "--plies", "2"));
+            long millis = toLong(option(args, "--time", "10000"));
+            int threads =
+                toInt(option(args, "--threads", ""
+                             + Runtime.getRuntime().availableProcessors()));
+            TreeMap<Long, Integer> entries = new TreeMap<>();
+            for (String size : option(args, "--sizes",
+                                      "" + Defaults.BOARD_SIZE).split(",")) {
+                int N = toInt(size);
+                if (N < 2 || N > Defaults.MAX_BOARD_SIZE) {
+                    throw error("size must be between 2 and %d",
+                                Defaults.MAX_BOARD_SIZE);
+                }
+                Map<Long, Integer> book = generate(N, plies, millis, threads);
+                System.err.printf("%dx%d: %d positions%n", N, N, book.size());
+                entries.putAll(book);
+            }
+            write(args.getFirst("--out"), entries);
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return the moves found by searching each unfinished position
+     *  reached by fewer than PLIES moves from the start of a game on an
+     *  N x N grid for MILLIS milliseconds, using THREADS threads, each
+     *  with its own transposition table.  The result maps the bookKey of
+     *  each position to its move. */
+    static Map<Long, Integer> generate(int N, int plies, long millis,
+                                       int threads) {
+        List<Board> positions = new ArrayList<>();
+        HashSet<Long> seen = new HashSet<>();
+        Board start = new Board(N);
+        positions.add(start);
+        seen.add(bookKey(start));
+        int[] moves = new int[N * N];
+        int first = 0;
+        for (int ply = 1; ply < plies; ply += 1) {
+            int last = positions.size();
+            for (int k = first; k < last; k += 1) {
+                Board board = positions.get(k);
+                int numMoves = board.legalMoves(board.whoseMove(), moves);
+                for (int m = 0; m < numMoves; m += 1) {
+                    Board next = new Board(board);
+                    next.addSpot(next.whoseMove(), moves[m]);
+                    if (next.getWinner() == null
+                        && seen.add(bookKey(next))) {
+                        positions.add(next);
+                    }
+                }
+            }
+            first = last;
+        }
+
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.max(1, threads));
+        ThreadLocal<TranspositionTable> tables =
+            ThreadLocal.withInitial(
+                () -> new TranspositionTable(Defaults.TABLE_SIZE));
+        List<Future<Integer>> results = new ArrayList<>();
+        for (Board position : positions) {
+            results.add(pool.submit(() -> {
+                TranspositionTable table = tables.get();
+                table.newSearch();
+                Searcher searcher = new Searcher(position, table, 0);
+                return searcher.search(System.nanoTime()
+                                       + millis * 1_000_000, 1);
+            }));
+        }
+        TreeMap<Long, Integer> book = new TreeMap<>();
+        try {
+            for (int k = 0; k < positions.size(); k += 1) {
+                int move = results.get(k).get();
+                if (move >= 0) {
+                    book.put(bookKey(positions.get(k)), move);
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new Error("book search failed", excp);
+        } finally {
+            pool.shutdown();
+        }
+        return book;
+    }
+
+    /** Write a book file named FILENAME holding ENTRIES, which maps
+     *  bookKeys to square numbers. */
+    static void write(String fileName, Map<Long, Integer> entries) {
+        TreeMap<Long, Integer> sorted = new TreeMap<>(entries);
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(sorted.size());
+            for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        } catch (IOException excp) {
+            throw error("could not write opening book %s", fileName);
+        }
+    }
+
+    /** Return the book in the file named FILENAME, mapped into
+     *  memory. */
+    static OpeningBook open(String fileName) {
+        try (FileChannel file = FileChannel.open(Paths.get(fileName),
+                                                 READ)) {
+            long length = file.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw error("%s is not an opening book", fileName);
+            }
+            ByteBuffer entries =
+                file.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int count = entries.getInt(2 * Integer.BYTES);
+            if (entries.getInt(0) != MAGIC
+                || entries.getInt(Integer.BYTES) != FORMAT
+                || count < 0
+                || length != HEADER_BYTES + (long) count * ENTRY_BYTES) {
+                throw error("%s is not an opening book of this version",
+                            fileName);
+            }
+            return new OpeningBook(entries, count);
+        } catch (IOException excp) {
+            throw error("could not read opening book %s", fileName);
+        }
+    }
+
+    /** A book with COUNT entries held in ENTRIES, following the
+     *  header. */
+    private OpeningBook(ByteBuffer entries, int count) {
+        _entries = entries;
+        _count = count;
+    }
+
+    /** Return the number of positions in this book. */
+    int size() {
+        return _count;
+    }
+
+    /** Return the book move (a square number) from the position on
+     *  BOARD, or -1 if there is none.  Only positions on square grids
+     *  are in books.  May be called from any thread. */
+    int probe(Board board) {
+        if (board.topology() != Topology.of(board.size())) {
+            return -1;
+        }
+        long key = bookKey(board);
+        int lo = 0, hi = _count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = HEADER_BYTES + mid * ENTRY_BYTES;
+            long midKey = _entries.getLong(at);
+            if (midKey < key) {
+                lo = mid + 1;
+            } else if (midKey > key) {
+                hi = mid - 1;
+            } else {
+                int move = _entries.getInt(at + Long.BYTES);
+                return board.exists(move)
+                    && board.isLegal(board.whoseMove(), move) ? move : -1;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the key of the position on BOARD in books: its position
+     *  key, combined with a key for its size, since positions on boards
+     *  of different sizes share one book. */
+    static long bookKey(Board board) {
+        return board.positionKey() ^ Board.cellKey(-2 - board.size(), 0);
+    }
+
+    /** The mapped book file. */
+    private final ByteBuffer _entries;
+    /** The number of entries in _entries. */
+    private final int _count;
+}
@@ -0,0 +1,82 @@
+package jump61;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static jump61.Side.*;
+
+/** Unit tests of OpeningBooks.
+ *  @author Desiree Garcia
+ */
+
+public class OpeningBookTest {
+
+    @Test
+    public void testGenerateAndProbe() throws IOException {
+        Map<Long, Integer> entries = OpeningBook.generate(3, 2, 10, 2);
+        assertEquals("positions within one move of the start", 10,
+                     entries.size());
+        File file = File.createTempFile("book", ".dat");
+        try {
+            OpeningBook.write(file.getPath(), entries);
+            OpeningBook book = OpeningBook.open(file.getPath());
+            assertEquals("book size", entries.size(), book.size());
+            Board B = new Board(3);
+            int move = book.probe(B);
+            assertEquals("book move", (int) entries.get(
+                             OpeningBook.bookKey(B)), move);
+            assertTrue("legal book move", B.isLegal(RED, move));
+            B.addSpot(RED, 2, 2);
+            assertTrue("reply in book", book.probe(B) >= 0);
+            B.addSpot(BLUE, 1, 1);
+            assertEquals("too deep for book", -1, book.probe(B));
+            assertEquals("other size", -1, book.probe(new Board(4)));
+            assertEquals("other topology", -1, book.probe(
+                             new Board(Topology.of(Topology.Kind.TORUS,
+                                                   3))));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testSortedLookup() throws IOException {
+        Map<Long, Integer> entries = new HashMap<>();
+        Board B = new Board(4);
+        for (int n = 0; n < 16; n += 1) {
+            entries.put(OpeningBook.bookKey(B), n);
+            B.addSpot(B.whoseMove(), n);
+        }
+        for (long k = -50; k < 50; k += 1) {
+            entries.put(k * 0x0123456789abcdefL, 0);
+        }
+        File file = File.createTempFile("book", ".dat");
+        try {
+            OpeningBook.write(file.getPath(), entries);
+            OpeningBook book = OpeningBook.open(file.getPath());
+            Board C = new Board(4);
+            for (int n = 0; n < 16; n += 1) {
+                assertEquals("move " + n, n, book.probe(C));
+                C.addSpot(C.whoseMove(), n);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = GameException.class)
+    public void testNotABook() throws IOException {
+        File file = File.createTempFile("book", ".dat");
+        try {
+            OpeningBook.open(file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package jump61;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Exhaustive enumeration of the move sequences from a position ("perft",
+ *  after the chess-programming tool), for measuring the speed of move
+ *  generation and jumping apart from any search, and for checking one
+ *  implementation of Board against another.
+ *
+ *  The tree of a count to depth D from a position contains every
+ *  sequence of up to D legal moves, a sequence ending early only when
+ *  its last move wins the game.  Its leaves are the positions at the
+ *  ends of those sequences; a leaf is a cascade if the move leading to
+ *  it made a square jump, and a win if the game is over there.
+ *  @author Desiree Garcia
+ */
+class Perft {
+
+    /** The totals from a count. */
+    static class Counts {
+
+        /** Add the totals in OTHER to mine. */
+        void add(Counts other) {
+            leaves += other.leaves;
+            cascades += other.cascades;
+            wins += other.wins;
+            nodes += other.nodes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d leaves, %d cascades, %d wins",
+                                 leaves, cascades, wins);
+        }
+
+        /** Number of leaves. */
+        long leaves;
+        /** Number of leaves reached by a move that caused a jump. */
+        long cascades;
+        /** Number of leaves at which the game is over. */
+        long wins;
+        /** Number of moves made in reaching all positions in the tree. */
+        long nodes;
+    }
+
+    /** Return the counts of the tree of depth DEPTH from the position on
+     *  BOARD, which is left unchanged. */
+    static Counts count(Board board, int depth) {
+        Counts counts = new Counts();
+        if (depth <= 0 || board.getWinner() != null) {
+            counts.leaves = 1;
+            counts.wins = board.getWinner() != null ? 1 : 0;
+        } else {
+            int numSquares = board.size() * board.size();
+            count(board, depth, new int[depth + 1][numSquares], counts);
+        }
+        return counts;
+    }
+
+    /** Return the counts of the subtrees of depth DEPTH - 1 following
+     *  each legal move on BOARD, indexed by the square number of the
+     *  move (null for illegal moves), counting the subtrees in parallel
+     *  in up to THREADS threads.  BOARD is left unchanged.  Requires
+     *  DEPTH >= 1. */
+    static Counts[] divide(Board board, int depth, int threads) {
+        int numSquares = board.size() * board.size();
+        Counts[] result = new Counts[numSquares];
+        if (board.getWinner() != null) {
+            return result;
+        }
+        Side player = board.whoseMove();
+        int[] legal = new int[numSquares];
+        int numMoves = board.legalMoves(player, legal);
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<Counts>> subtrees = new ArrayList<>();
+        for (int k = 0; k < numMoves; k += 1) {
+            Board child = new Board(board);
+            boolean cascade = child.critical(legal[k]);
+            child.addSpot(player, legal[k]);
+            boolean leafCascade =
+                cascade && (depth == 1 || child.getWinner() != null);
+            subtrees.add(pool.submit(() -> {
+                Counts counts = count(child, depth - 1);
+                counts.cascades += leafCascade ? 1 : 0;
+                counts.nodes += 1;
+                return counts;
+            }));
+        }
+        try {
+            for (int k = 0; k < numMoves; k += 1) {
+                result[legal[k]] = subtrees.get(k).get();
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new Error("perft failed", excp);
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /** Return the sum of the non-null elements of DIVISION. */
+    static Counts total(Counts[] division) {
+        Counts total = new Counts();
+        for (Counts counts : division) {
+            if (counts != null) {
+                total.add(counts);
+            }
+        }
+        return total;
+    }
+
+    /** Add the counts of the tree of depth DEPTH >= 1 from the
+     *  unfinished position on BOARD to COUNTS, using MOVES[DEPTH] to hold
+     *  the legal moves from BOARD and MOVES[0 .. DEPTH-1] for its
+     *  subtrees.  Restores BOARD. */
+    private static void count(Board board, int depth, int[][] moves,
+                              Counts counts) {
+        Side player = board.whoseMove();
+        int[] legal = moves[depth];
+        int numMoves = board.legalMoves(player, legal);
+        counts.nodes += numMoves;
+        for (int k = 0; k < numMoves; k += 1) {
+            int n = legal[k];
+            boolean cascade = board.critical(n);
+            board.addSpot(player, n);
+            if (board.getWinner() != null) {
+                counts.leaves += 1;
+                counts.wins += 1;
+                counts.cascades += cascade ? 1 : 0;
+            } else if (depth == 1) {
+                counts.leaves += 1;
+                counts.cascades += cascade ? 1 : 0;
+            } else {
+                count(board, depth - 1, moves, counts);
+            }
+            board.undo();
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package jump61;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static jump61.Side.*;
+
+/** Unit tests of Perft, which in turn check Board's move generation,
+ *  jumping, and undoing against known counts.
+ *  @author Desiree Garcia
+ */
+
+public class PerftTest {
+
+    @Test
+    public void testKnownCounts() {
+        assertCounts(new Board(2), 1, 4, 0, 0);
+        assertCounts(new Board(2), 2, 12, 0, 0);
+        assertCounts(new Board(2), 3, 36, 12, 8);
+        assertCounts(new Board(2), 6, 84, 84, 84);
+        assertCounts(new Board(3), 4, 4040, 256, 0);
+        assertCounts(new Board(3), 5, 28368, 3432, 0);
+        assertCounts(new Board(4), 3, 3600, 60, 0);
+    }
+
+    @Test
+    public void testDivide() {
+        Board B = new Board(3);
+        B.set(1, 1, 2, RED);
+        B.set(2, 2, 4, BLUE);
+        for (int depth = 1; depth <= 4; depth += 1) {
+            Perft.Counts whole = Perft.count(B, depth);
+            Perft.Counts parts = Perft.total(Perft.divide(B, depth, 2));
+            assertEquals("leaves", whole.leaves, parts.leaves);
+            assertEquals("cascades", whole.cascades, parts.cascades);
+            assertEquals("wins", whole.wins, parts.wins);
+            assertEquals("nodes", whole.nodes, parts.nodes);
+        }
+        assertEquals("board changed", 2, B.spots(0));
+    }
+
+    @Test
+    public void testAgainstCopies() {
+        Board B = new Board(3);
+        B.set(2, 2, 3, RED);
+        B.set(1, 2, 2, BLUE);
+        for (int depth = 1; depth <= 4; depth += 1) {
+            Perft.Counts counts = Perft.count(B, depth);
+            long[] expected = new long[3];
+            countByCopying(B, depth, false, expected);
+            assertEquals("leaves", expected[0], counts.leaves);
+            assertEquals("cascades", expected[1], counts.cascades);
+            assertEquals("wins", expected[2], counts.wins);
+        }
+    }
+
+    /** Check that the tree of depth DEPTH from B has LEAVES leaves,
+     *  CASCADES cascades, and WINS wins. */
+    private static void assertCounts(Board B, int depth, long leaves,
+                                     long cascades, long wins) {
+        Perft.Counts counts = Perft.count(B, depth);
+        String msg = String.format("perft %d on %dx%d", depth, B.size(),
+                                   B.size());
+        assertEquals(msg + " leaves", leaves, counts.leaves);
+        assertEquals(msg + " cascades", cascades, counts.cascades);
+        assertEquals(msg + " wins", wins, counts.wins);
+    }
+
+    /** Add the leaves, cascades, and wins of the tree of depth DEPTH
+     *  from B to TOTALS[0 .. 2], where CASCADE indicates whether the move
+     *  to B caused a jump, making a fresh copy of the board for each
+     *  move rather than undoing moves. */
+    private static void countByCopying(Board B, int depth, boolean cascade,
+                                       long[] totals) {
+        if (depth == 0 || B.getWinner() != null) {
+            totals[0] += 1;
+            totals[1] += cascade ? 1 : 0;
+            totals[2] += B.getWinner() != null ? 1 : 0;
+            return;
+        }
+        for (int n = 0; n < B.size() * B.size(); n += 1) {
+            if (B.isLegal(B.whoseMove(), n)) {
+                Board next = new Board(B);
+                next.addSpot(B.whoseMove(), n);
+                int r = B.row(n), c = B.col(n);
+                countByCopying(next, depth - 1,
+                               B.spots(n) == B.neighbors(r, c), totals);
+            }
+        }
+    }
+
+}
@@ -36,6 +36,11 @@ abstract class Player {
      *  proper color and that the game is not yet won. */
     abstract String getMove();
 
+    /** Stop any thinking I am doing in the background while it is not my
+     *  turn, as when my game is interrupted.  By default, does nothing. */
+    void stopThinking() {
+    }
+
     /** My current color. */
     private Side _color;
     /** The game I'm in. */
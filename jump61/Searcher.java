@@ -0,0 +1,388 @@
+package jump61;
+
+import java.util.Arrays;
+
+import static jump61.Side.RED;
+import static jump61.Side.BLUE;
+
+/** An iterative-deepening alpha-beta search of the positions reachable
+ *  from one Board.  Several Searchers on copies of the same position may
+ *  run concurrently in different threads, sharing a TranspositionTable
+ *  (a "lazy SMP" search): each benefits from the results the others
+ *  store, and the searchers other than the first are perturbed so that
+ *  they tend to explore different parts of the tree.
+ *  @author Desiree Garcia
+ */
+class Searcher {
+
+    /** A Searcher of the positions reachable from BOARD, which it may
+     *  modify (but restores after each search) and has keep its
+     *  evaluation features and critical components, sharing results
+     *  through TABLE.  If ROTATION is non-zero, moves that are not
+     *  recommended by TABLE are tried starting with square #ROTATION
+     *  rather than #0. */
+    Searcher(Board board, TranspositionTable table, int rotation) {
+        int numSquares = board.size() * board.size();
+        board.trackFeatures(true);
+        board.trackCascades(true);
+        _board = board;
+        _table = table;
+        _rotation = rotation;
+        _moves = new int[MAX_DEPTH + 1][];
+        _scores = new int[MAX_DEPTH + 1][];
+        _killers = new int[MAX_DEPTH + 1][KILLERS];
+        _history = new int[2 * numSquares];
+    }
+
+    /** Search my board by iterative deepening, at depths FIRSTDEPTH,
+     *  FIRSTDEPTH + 1, ..., until System.nanoTime() passes DEADLINE, a
+     *  win or loss is certain, MAX_DEPTH is reached, or stop() is called.
+     *  The first iteration is completed regardless of DEADLINE (but not
+     *  of stop()).  Returns the move found by the deepest completed
+     *  iteration, or -1 if none completed.  Assumes the game is not
+     *  over. */
+    int search(long deadline, int firstDepth) {
+        return search(deadline, firstDepth, MAX_DEPTH);
+    }
+
+    /** As for search(DEADLINE, FIRSTDEPTH), but searching no deeper than
+     *  LASTDEPTH. */
+    int search(long deadline, int firstDepth, int lastDepth) {
+        _deadline = deadline;
+        _stopped = _mayStop = false;
+        _nodes = 0;
+        _bestMove = -1;
+        _depth = 0;
+        for (int[] killers : _killers) {
+            Arrays.fill(killers, -1);
+        }
+        for (int depth = firstDepth; depth <= lastDepth; depth += 1) {
+            _foundMove = -1;
+            int value = minMax(_board, depth, 0, true, -INFINITY, INFINITY);
+            if (_stopped) {
+                break;
+            }
+            _bestMove = _foundMove;
+            _value = value;
+            _depth = depth;
+            _mayStop = true;
+            Utils.debug(2, "depth %d: %s value %d (%d nodes)", depth,
+                        _board.moveString(_bestMove), value, _nodes);
+            if (Math.abs(value) >= WINNING_VALUE) {
+                break;
+            }
+        }
+        return _bestMove;
+    }
+
+    /** Cause any current or future search to stop as soon as possible.
+     *  May be called from any thread. */
+    void stop() {
+        _abort = true;
+    }
+
+    /** Return the number of positions visited by the last search. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the depth of the last completed iteration of the last
+     *  search, or 0 if none completed. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the value, for the player to move, found by the last
+     *  completed iteration of the last search. */
+    int value() {
+        return _value;
+    }
+
+    /** Return the best move found by the last completed iteration of the
+     *  last search, or -1 if none completed. */
+    int bestMove() {
+        return _bestMove;
+    }
+
+    /** Find a move from position BOARD and return its value for the
+     *  player to move (so that the value for the opponent is its
+     *  negation), recording the move found in _foundMove iff SAVEMOVE.
+     *  The move should have maximal value, or have value >= BETA, in
+     *  which case the search stops early; a value <= ALPHA is only an
+     *  upper bound on the true value.  Searches up to DEPTH levels.  PLY
+     *  is the number of moves from the root of the search to BOARD.
+     *  Searching at level 0 simply returns a static estimate of the
+     *  board value and does not set _foundMove. If the game is over on
+     *  BOARD, does not set _foundMove.  Once the search is stopped, sets
+     *  _stopped and returns meaningless values. */
+    private int minMax(Board board, int depth, int ply, boolean saveMove,
+                       int alpha, int beta) {
+        Side player = board.whoseMove();
+        Side winner = board.getWinner();
+        if (winner != null) {
+            return winner == player ? WINNING_VALUE : -WINNING_VALUE;
+        } else if (depth == 0) {
+            int value = staticEval(board, WINNING_VALUE);
+            return player == RED ? value : -value;
+        }
+        _nodes += 1;
+        if ((_nodes & CLOCK_CHECK_MASK) == 0
+            && (_abort || (_mayStop && System.nanoTime() > _deadline))) {
+            _stopped = true;
+        }
+        if (_stopped) {
+            return 0;
+        }
+
+        long key = board.positionKey();
+        long entry = _table.probe(key);
+        int hashMove = -1;
+        if (entry != TranspositionTable.MISS) {
+            hashMove = TranspositionTable.move(entry);
+            if (!saveMove && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry);
+                switch (TranspositionTable.bound(entry)) {
+                case TranspositionTable.EXACT:
+                    return score;
+                case TranspositionTable.LOWER:
+                    if (score >= beta) {
+                        return score;
+                    }
+                    break;
+                default:
+                    if (score <= alpha) {
+                        return score;
+                    }
+                    break;
+                }
+            }
+        }
+
+        int alpha0 = alpha;
+        int bestValue = -INFINITY, bestMove = -1;
+        if (_moves[ply] == null) {
+            int numSquares = board.size() * board.size();
+            _moves[ply] = new int[numSquares];
+            _scores[ply] = new int[numSquares];
+        }
+        int[] moves = _moves[ply], scores = _scores[ply];
+        int count = board.legalMoves(player, _rotation, moves);
+        int win = depth >= PREDICT_DEPTH
+            ? winningMove(board, player, moves, count) : -1;
+        if (win >= 0) {
+            bestValue = WINNING_VALUE;
+            bestMove = win;
+            count = 0;
+        }
+        scoreMoves(board, player, ply, hashMove, moves, scores, count);
+        for (int i = 0; i < count && alpha < beta; i += 1) {
+            int n = selectMove(moves, scores, i, count);
+            board.addSpot(player, n);
+            int value =
+                -minMax(board, depth - 1, ply + 1, false, -beta, -alpha);
+            board.undo();
+            if (_stopped) {
+                return 0;
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = n;
+                alpha = Math.max(alpha, value);
+            }
+        }
+        if (bestValue >= beta && !board.critical(bestMove)) {
+            recordCutoff(player, ply, depth, bestMove);
+        }
+
+        int bound;
+        if (bestValue <= alpha0) {
+            bound = TranspositionTable.UPPER;
+        } else if (bestValue >= beta) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        _table.store(key, depth, bound, bestValue, bestMove);
+        if (saveMove) {
+            _foundMove = bestMove;
+        }
+        return bestValue;
+    }
+
+    /** Return one of the moves MOVES[0 .. COUNT-1] that certainly wins
+     *  for PLAYER on BOARD, predicted from BOARD's critical components
+     *  without making it (see Board.cascadeWins), or -1 if none does. */
+    private int winningMove(Board board, Side player, int[] moves,
+                            int count) {
+        for (int k = 0; k < count; k += 1) {
+            if (board.cascadeWins(player, moves[k])) {
+                return moves[k];
+            }
+        }
+        return -1;
+    }
+
+    /** Set SCORES[K] to the priority of trying move MOVES[K] by PLAYER
+     *  on BOARD at PLY, for 0 <= K < COUNT.  In decreasing order of
+     *  priority, the moves are HASHMOVE, moves that start a cascade
+     *  (the more opposing neighbors, the better), killer moves for PLY,
+     *  and other moves in order of their history scores. */
+    private void scoreMoves(Board board, Side player, int ply, int hashMove,
+                            int[] moves, int[] scores, int count) {
+        int[] killers = _killers[ply];
+        int historyBase = historyIndex(player, 0);
+        Side opponent = player.opposite();
+        for (int k = 0; k < count; k += 1) {
+            int n = moves[k];
+            if (n == hashMove) {
+                scores[k] = HASH_MOVE_SCORE;
+            } else if (board.critical(n)) {
+                scores[k] = CASCADE_SCORE + board.neighborsOfSide(n, opponent);
+            } else if (n == killers[0] || n == killers[1]) {
+                scores[k] = n == killers[0] ? KILLER_SCORE + 1 : KILLER_SCORE;
+            } else {
+                scores[k] = _history[historyBase + n];
+            }
+        }
+    }
+
+    /** Move the highest-scored of MOVES[I .. COUNT-1] (according to the
+     *  corresponding SCORES) to MOVES[I], moving its score along with
+     *  it, and return it.  Among equal scores, the first is chosen. */
+    private static int selectMove(int[] moves, int[] scores, int i,
+                                  int count) {
+        int best = i;
+        for (int k = i + 1; k < count; k += 1) {
+            if (scores[k] > scores[best]) {
+                best = k;
+            }
+        }
+        int move = moves[best], score = scores[best];
+        moves[best] = moves[i];
+        scores[best] = scores[i];
+        moves[i] = move;
+        scores[i] = score;
+        return move;
+    }
+
+    /** Record that the quiet (non-cascading) MOVE by PLAYER caused a
+     *  cutoff at PLY in a search to DEPTH, making it a killer move for
+     *  PLY and raising its history score. */
+    private void recordCutoff(Side player, int ply, int depth, int move) {
+        int[] killers = _killers[ply];
+        if (killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+        int h = historyIndex(player, move);
+        _history[h] = Math.min(_history[h] + depth * depth, MAX_HISTORY);
+    }
+
+    /** Return the index in _history for a move to square #N by PLAYER. */
+    private int historyIndex(Side player, int n) {
+        return (player == RED ? 0 : _history.length / 2) + n;
+    }
+
+    /** Return a heuristic estimate of the value of board position B.
+     *  Use WINNINGVALUE to indicate a win for Red and -WINNINGVALUE to
+     *  indicate a win for Blue.  Otherwise, the estimate is the weighted
+     *  sum of Red's margins in each of the evaluation features that B
+     *  keeps up to date (see Board.feature), and so takes constant
+     *  time.  On large boards, that sum may exceed WINNINGVALUE, so it is
+     *  limited to lie strictly between -WINNINGVALUE and WINNINGVALUE,
+     *  lest an unfinished game be taken for a won one. */
+    static int staticEval(Board b, int winningValue) {
+        Side winner = b.getWinner();
+        if (winner != null) {
+            return winner == RED ? winningValue : -winningValue;
+        }
+        int value;
+        value = 0;
+        for (int f = 0; f < Board.NUM_FEATURES; f += 1) {
+            value += FEATURE_WEIGHTS[f]
+                * (b.feature(RED, f) - b.feature(BLUE, f));
+        }
+        return Math.max(1 - winningValue, Math.min(winningValue - 1, value));
+    }
+
+    /** Value of a won position, for the winner. */
+    static final int WINNING_VALUE = 1 << 20;
+
+    /** A value beyond any board evaluation. */
+    static final int INFINITY = WINNING_VALUE + 1;
+
+    /** Weights of the evaluation features in staticEval, indexed by
+     *  feature (Board.SQUARES, ...).  Threatened squares count against
+     *  their owner. */
+    private static final int[] FEATURE_WEIGHTS = {
+        8, 1, 2, -4, 2, 1, 1,
+    };
+
+    /** Deepest search attempted. */
+    static final int MAX_DEPTH = TranspositionTable.MAX_DEPTH;
+
+    /** Least depth of search at which minMax looks for certain wins
+     *  (see winningMove) before searching moves.  Nearer the leaves,
+     *  searching the winning move costs less than looking for it. */
+    private static final int PREDICT_DEPTH = 2;
+
+    /** Number of killer moves remembered per ply. */
+    private static final int KILLERS = 2;
+
+    /** Move-ordering priorities (see scoreMoves).  History scores are
+     *  limited to MAX_HISTORY. */
+    private static final int
+        HASH_MOVE_SCORE = Integer.MAX_VALUE,
+        CASCADE_SCORE = 1 << 30,
+        KILLER_SCORE = 1 << 29,
+        MAX_HISTORY = KILLER_SCORE - 1;
+
+    /** The search checks the clock and for stop() whenever the number of
+     *  nodes visited has all these bits clear. */
+    private static final int CLOCK_CHECK_MASK = 0x3ff;
+
+    /** The position searched. */
+    private final Board _board;
+
+    /** Search results, possibly shared with other Searchers. */
+    private final TranspositionTable _table;
+
+    /** First square tried among moves not suggested by _table. */
+    private final int _rotation;
+
+    /** _moves[P] holds the moves being considered at ply P, and
+     *  _scores[P] their priorities.  Allocated as plies are first reached,
+     *  since on large boards few are. */
+    private final int[][] _moves, _scores;
+
+    /** _killers[P] holds the most recent quiet moves that caused
+     *  cutoffs at ply P, most recent first, or -1. */
+    private final int[][] _killers;
+
+    /** History scores for moves by RED to each square, followed by
+     *  those for BLUE. */
+    private final int[] _history;
+
+    /** Used to convey moves discovered by minMax. */
+    private int _foundMove;
+
+    /** Best move, value, and depth of the last completed iteration. */
+    private int _bestMove, _value, _depth;
+
+    /** Time (as for System.nanoTime) at which the current search must
+     *  stop. */
+    private long _deadline;
+
+    /** True iff the current search has completed an iteration, and so
+     *  may be stopped when time runs out. */
+    private boolean _mayStop;
+
+    /** True iff the current search has been stopped. */
+    private boolean _stopped;
+
+    /** Set by stop() to request that the current search stop. */
+    private volatile boolean _abort;
+
+    /** Number of positions visited by the current search. */
+    private long _nodes;
+}
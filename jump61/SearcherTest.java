@@ -0,0 +1,40 @@
+package jump61;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static jump61.Side.*;
+import static jump61.Searcher.*;
+
+/** Unit tests of Searchers.
+ *  @author Desiree Garcia
+ */
+
+public class SearcherTest {
+
+    @Test
+    public void testEvalBound() {
+        int N = 400;
+        Board B = new Board(N);
+        B.trackFeatures(true);
+        for (int r = 1; r <= N; r += 1) {
+            for (int c = 1; c <= N; c += 1) {
+                B.set(r, c, 1, r < N ? RED : BLUE);
+            }
+        }
+        assertNull("game should not be over", B.getWinner());
+        int value = staticEval(B, WINNING_VALUE);
+        assertTrue("Red should lead", value > 0);
+        assertTrue("unfinished game scored as a win", value < WINNING_VALUE);
+        for (int r = 1; r <= N; r += 1) {
+            for (int c = 1; c <= N; c += 1) {
+                B.set(r, c, 1, r < N ? BLUE : RED);
+            }
+        }
+        value = staticEval(B, WINNING_VALUE);
+        assertTrue("Blue should lead", value < 0);
+        assertTrue("unfinished game scored as a loss",
+                   value > -WINNING_VALUE);
+    }
+
+}
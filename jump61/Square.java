@@ -46,9 +46,10 @@ class Square {
      * necessary to override .equals and .hashCode; the default implementations
      * work. */
 
-    /** Memo table for Squares, allowing spot values up to 9
-     *  (probably excessive). */
-    private static Square[][] _allSquares = new Square[3][10];
+    /** Memo table for Squares, allowing any spot value a Board can
+     *  hold. */
+    private static Square[][] _allSquares =
+        new Square[3][Board.MAX_SPOTS + 1];
 
     /** The Side occupying this Square. */
     private final Side _side;
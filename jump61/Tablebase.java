@@ -0,0 +1,457 @@
+package jump61;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+import ucb.util.CommandArgs;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static jump61.Side.*;
+import static jump61.GameException.error;
+import static jump61.Utils.*;
+
+/** The exact outcomes of all positions on small square grids: for each,
+ *  whether the player to move wins with best play, and in how many
+ *  moves (the winner hurrying, the loser delaying).
+ *
+ *  Each move adds one spot to the board, and jumps only move spots, so
+ *  a move always leads to a position with one more spot.  The builder
+ *  (see main) therefore solves the positions of one size in layers by
+ *  number of spots, from the fullest down, each position's successors
+ *  having been solved in the layer before.  The positions in a layer
+ *  are independent, and are solved in parallel.  Positions are
+ *  numbered by index(): each square contributes a digit, in a base one
+ *  more than twice its capacity, that gives its color and spots.  This
+ *  numbers every arrangement of squares, reachable or not, and so for
+ *  each size there is a fixed number of positions, which must be small
+ *  enough to solve in memory: 625 on 2x2 boards and about 13.6 million
+ *  on 3x3, but about 2 * 10**13 on 4x4.
+ *
+ *  A tablebase file holds the outcomes of each size it covers, packed
+ *  into as few bits as their longest distance needs, in positions
+ *  order.  open() maps the file into memory, so that probe() reads an
+ *  outcome without searching, allocating, or reading the whole file.
+ *  An outcome is returned as a value for which wins() and distance()
+ *  give the winner and distance.
+ *
+ *  Usage: java jump61.Tablebase --out=FILE [--sizes=S1,S2,...]
+ *                               [--threads=P]
+ *  which solves boards of each size using P threads and writes the
+ *  results to FILE.
+ *  @author Desiree Garcia
+ */
+class Tablebase {
+
+    /** Number identifying a tablebase file. */
+    static final int MAGIC = 0x4A363154;
+
+    /** Version of the file format. */
+    static final int FORMAT = 1;
+
+    /** Largest number of positions of a board size that can be
+     *  solved. */
+    static final long MAX_POSITIONS = Integer.MAX_VALUE - Byte.MAX_VALUE;
+
+    /** Result of probe() for a position not in the tablebase. */
+    static final int MISS = -1;
+
+    /** Number of bytes in the header, before the section descriptions:
+     *  MAGIC, FORMAT, and the number of sections. */
+    static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    /** Number of bytes in the description of one section: the board
+     *  size, bits per outcome, and the offset of the outcomes in the
+     *  file. */
+    static final int SECTION_BYTES = 2 * Integer.BYTES + Long.BYTES;
+
+    /** Solve the boards described by ARGS0 (see above) and write their
+     *  tablebase. */
+    public static void main(String[] args0) {
+        CommandArgs args =
+            new CommandArgs("--out=(.+) --sizes=(\\d+(,\\d+)*){0,1}"
+                            + " --threads=(\\d+){0,1}", args0);
+        if (!args.ok()) {
+            System.err.println("Usage: java jump61.Tablebase --out=FILE"
+                               + " [--sizes=S,...] [--threads=P]");
+            System.exit(1);
+        }
+        try {
+            int threads =
+                toInt(option(args, "--threads", ""
+                             + Runtime.getRuntime().availableProcessors()));
+            TreeMap<Integer, byte[]> sections = new TreeMap<>();
+            for (String size : option(args, "--sizes", "2,3").split(",")) {
+                int N = toInt(size);
+                long start = System.nanoTime();
+                byte[] outcomes = solve(N, threads);
+                System.err.printf("%dx%d: %d positions, %d ms%n", N, N,
+                                  outcomes.length,
+                                  (System.nanoTime() - start) / 1_000_000);
+                sections.put(N, outcomes);
+            }
+            write(args.getFirst("--out"), sections);
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return the number of positions (see index) of N x N grids. */
+    static long numPositions(int N) {
+        Topology topology = Topology.of(N);
+        long count = 1;
+        for (int n = 0; n < N * N && count <= MAX_POSITIONS; n += 1) {
+            count *= 2 * topology.capacity(n) + 1;
+        }
+        return count;
+    }
+
+    /** Return the number of the position on BOARD, an N x N grid, in
+     *  the tablebase, or -1 if it cannot be numbered because it holds a
+     *  square with more spots than its capacity (as a cascade that wins
+     *  the game may leave) or with none.  Square
+     *  #K contributes the digit 0 if white, S if red with S spots, and
+     *  C + S if blue with S spots, where C is its capacity, in base 2C +
+     *  1, square #0 being least significant. */
+    static int index(Board board) {
+        int index = 0;
+        for (int n = board.size() * board.size() - 1; n >= 0; n -= 1) {
+            int capacity = board.neighbors(n), spots = board.spots(n);
+            Side side = board.side(n);
+            if (side != WHITE && (spots < 1 || spots > capacity)) {
+                return -1;
+            }
+            index = index * (2 * capacity + 1)
+                + (side == WHITE ? 0 : side == RED ? spots
+                   : capacity + spots);
+        }
+        return index;
+    }
+
+    /** Set BOARD, an N x N grid, to position #INDEX (see index). */
+    private static void setPosition(Board board, int index) {
+        int N = board.size();
+        board.clear(N);
+        for (int n = 0; n < N * N; n += 1) {
+            int capacity = board.neighbors(n),
+                digit = index % (2 * capacity + 1);
+            index /= 2 * capacity + 1;
+            if (digit > capacity) {
+                board.set(board.row(n), board.col(n), digit - capacity,
+                          BLUE);
+            } else if (digit > 0) {
+                board.set(board.row(n), board.col(n), digit, RED);
+            }
+        }
+    }
+
+    /** Return the outcomes of all positions of N x N grids, indexed by
+     *  position number, solving the positions of each layer in THREADS
+     *  threads. */
+    static byte[] solve(int N, int threads) {
+        if (N < 2 || N > Defaults.MAX_BOARD_SIZE
+            || numPositions(N) > MAX_POSITIONS) {
+            throw error("%dx%d boards have too many positions to solve",
+                        N, N);
+        }
+        long count = numPositions(N);
+        byte[] outcomes = new byte[(int) count];
+        byte[] layers = new byte[(int) count];
+        Topology topology = Topology.of(N);
+        int maxSpots = 0;
+        for (int n = 0; n < N * N; n += 1) {
+            maxSpots += topology.capacity(n);
+        }
+        for (int index = 0; index < count; index += 1) {
+            int spots = 0;
+            for (int n = 0, rest = index; n < N * N; n += 1) {
+                int capacity = topology.capacity(n),
+                    digit = rest % (2 * capacity + 1);
+                rest /= 2 * capacity + 1;
+                spots += digit == 0 ? 1
+                    : digit > capacity ? digit - capacity : digit;
+            }
+            layers[index] = (byte) spots;
+        }
+
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.max(1, threads));
+        int chunks = Math.max(1, threads) * CHUNKS_PER_THREAD;
+        try {
+            for (int spots = maxSpots; spots >= N * N; spots -= 1) {
+                int layer = spots;
+                List<Future<?>> done = new ArrayList<>();
+                for (int k = 0; k < chunks; k += 1) {
+                    int first = (int) (count * k / chunks),
+                        last = (int) (count * (k + 1) / chunks);
+                    done.add(pool.submit(() -> {
+                        Board work = new Board(N);
+                        int[] moves = new int[N * N];
+                        ToIntFunction<Board> outcome =
+                            (b) -> outcomes[index(b)];
+                        for (int i = first; i < last; i += 1) {
+                            if (layers[i] == layer) {
+                                setPosition(work, i);
+                                outcomes[i] = (byte)
+                                    (solve(work, outcome, moves)
+                                     & OUTCOME_MASK);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> chunk : done) {
+                    chunk.get();
+                }
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new Error("tablebase solution failed", excp);
+        } finally {
+            pool.shutdown();
+        }
+        return outcomes;
+    }
+
+    /** Return the outcome of the position on BOARD and the move that
+     *  achieves it, given that OUTCOME gives the outcome of the positions
+     *  after each move from BOARD.  Uses MOVES to hold the legal moves.
+     *  The result is the move (-1 if the game is over) shifted left by
+     *  Byte.SIZE, or'ed with the outcome.  BOARD is restored
+     *  afterwards. */
+    private static int solve(Board board, ToIntFunction<Board> outcome,
+                             int[] moves) {
+        Side player = board.whoseMove();
+        if (board.getWinner() != null) {
+            return (-1 << Byte.SIZE) | outcome(board.getWinner() == player,
+                                               0);
+        }
+        int numMoves = board.legalMoves(player, moves);
+        int bestMove, best;
+        bestMove = -1;
+        best = 0;
+        for (int k = 0; k < numMoves; k += 1) {
+            board.addSpot(player, moves[k]);
+            int reply = board.getWinner() != null ? outcome(false, 0)
+                : outcome.applyAsInt(board);
+            board.undo();
+            int value = outcome(!wins(reply), distance(reply) + 1);
+            if (bestMove == -1 || better(value, best)) {
+                bestMove = moves[k];
+                best = value;
+            }
+        }
+        return (bestMove << Byte.SIZE) | best;
+    }
+
+    /** Return true iff outcome X is better than outcome Y for the player
+     *  to move: a win rather than a loss, a quicker win, or a slower
+     *  loss. */
+    private static boolean better(int x, int y) {
+        if (wins(x) != wins(y)) {
+            return wins(x);
+        } else if (wins(x)) {
+            return distance(x) < distance(y);
+        } else {
+            return distance(x) > distance(y);
+        }
+    }
+
+    /** Return the outcome of a position in which the player to move
+     *  wins iff WIN, in DISTANCE moves. */
+    static int outcome(boolean win, int distance) {
+        return (distance << 1) | (win ? 1 : 0);
+    }
+
+    /** Return true iff the player to move wins in a position with
+     *  outcome VALUE. */
+    static boolean wins(int value) {
+        return (value & 1) != 0;
+    }
+
+    /** Return the number of moves until the game ends in a position with
+     *  outcome VALUE. */
+    static int distance(int value) {
+        return value >>> 1;
+    }
+
+    /** Write a tablebase file named FILENAME holding SECTIONS, which
+     *  maps each board size covered to the outcomes of its positions (as
+     *  returned by solve). */
+    static void write(String fileName, TreeMap<Integer, byte[]> sections) {
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(sections.size());
+            long offset = dataStart(sections.size());
+            List<long[]> packed = new ArrayList<>();
+            for (int N : sections.keySet()) {
+                byte[] outcomes = sections.get(N);
+                int maxValue = 1;
+                for (byte value : outcomes) {
+                    maxValue = Math.max(maxValue, value);
+                }
+                int bits =
+                    Integer.SIZE - Integer.numberOfLeadingZeros(maxValue);
+                long[] words = pack(outcomes, bits);
+                out.writeInt(N);
+                out.writeInt(bits);
+                out.writeLong(offset);
+                offset += (long) words.length * Long.BYTES;
+                packed.add(words);
+            }
+            while (out.size() % Long.BYTES != 0) {
+                out.writeByte(0);
+            }
+            for (long[] words : packed) {
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not write tablebase %s", fileName);
+        }
+    }
+
+    /** Return the offset of the first section's outcomes in a file with
+     *  SECTIONS sections: the end of the header, rounded up to a multiple
+     *  of Long.BYTES. */
+    private static long dataStart(int sections) {
+        long end = HEADER_BYTES + (long) sections * SECTION_BYTES;
+        return (end + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+    }
+
+    /** Return OUTCOMES packed BITS bits apiece into longs, outcome #I
+     *  occupying bits I * BITS through (I + 1) * BITS - 1, counting from
+     *  the least significant bit of the first long. */
+    private static long[] pack(byte[] outcomes, int bits) {
+        long[] words =
+            new long[(int) (((long) outcomes.length * bits + Long.SIZE - 1)
+                            / Long.SIZE)];
+        for (int i = 0; i < outcomes.length; i += 1) {
+            long bit = (long) i * bits;
+            int w = (int) (bit / Long.SIZE), shift = (int) (bit % Long.SIZE);
+            words[w] |= (long) outcomes[i] << shift;
+            if (shift + bits > Long.SIZE) {
+                words[w + 1] |= (long) outcomes[i] >>> (Long.SIZE - shift);
+            }
+        }
+        return words;
+    }
+
+    /** Return the tablebase in the file named FILENAME, mapped into
+     *  memory. */
+    static Tablebase open(String fileName) {
+        try (FileChannel file = FileChannel.open(Paths.get(fileName),
+                                                 READ)) {
+            long length = file.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw error("%s is not a tablebase", fileName);
+            }
+            ByteBuffer data =
+                file.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int sections = data.getInt(2 * Integer.BYTES);
+            if (data.getInt(0) != MAGIC
+                || data.getInt(Integer.BYTES) != FORMAT
+                || sections < 0 || dataStart(sections) > length) {
+                throw error("%s is not a tablebase of this version",
+                            fileName);
+            }
+            Tablebase result = new Tablebase(data);
+            for (int k = 0; k < sections; k += 1) {
+                int at = HEADER_BYTES + k * SECTION_BYTES;
+                int N = data.getInt(at),
+                    bits = data.getInt(at + Integer.BYTES);
+                long offset = data.getLong(at + 2 * Integer.BYTES);
+                if (N < 2 || N > Defaults.MAX_BOARD_SIZE
+                    || bits < 1 || bits > Byte.SIZE
+                    || numPositions(N) > MAX_POSITIONS
+                    || offset + (numPositions(N) * bits + Long.SIZE - 1)
+                       / Long.SIZE * Long.BYTES > length) {
+                    throw error("%s is not a valid tablebase", fileName);
+                }
+                result._bits.put(N, bits);
+                result._offsets.put(N, (int) offset);
+            }
+            return result;
+        } catch (IOException excp) {
+            throw error("could not read tablebase %s", fileName);
+        }
+    }
+
+    /** A tablebase whose file is mapped into DATA. */
+    private Tablebase(ByteBuffer data) {
+        _data = data;
+    }
+
+    /** Return true iff I hold the outcomes of positions on boards of size
+     *  N x N. */
+    boolean covers(int N) {
+        return _bits.containsKey(N);
+    }
+
+    /** Return the outcome of the position on BOARD (see wins and
+     *  distance), or MISS if it is not in this tablebase.  Only positions
+     *  on square grids are in tablebases.  May be called from any
+     *  thread. */
+    int probe(Board board) {
+        int N = board.size();
+        Integer bits = _bits.get(N);
+        if (bits == null || board.topology() != Topology.of(N)) {
+            return MISS;
+        }
+        int index = index(board);
+        if (index < 0) {
+            return MISS;
+        }
+        long bit = (long) index * bits;
+        int at = _offsets.get(N) + (int) (bit / Long.SIZE) * Long.BYTES,
+            shift = (int) (bit % Long.SIZE);
+        long word = _data.getLong(at) >>> shift;
+        if (shift + bits > Long.SIZE) {
+            word |= _data.getLong(at + Long.BYTES) << (Long.SIZE - shift);
+        }
+        return (int) word & ((1 << bits) - 1);
+    }
+
+    /** Return a best move (a square number) from the position on BOARD:
+     *  one that wins soonest if it can be won, and otherwise loses
+     *  latest.  Returns -1 if the position is not in this tablebase or
+     *  the game is over. */
+    int bestMove(Board board) {
+        if (probe(board) == MISS) {
+            return -1;
+        }
+        Board work = new Board(board);
+        return solve(work, this::probe, new int[board.size() * board.size()])
+            >> Byte.SIZE;
+    }
+
+    /** Number of parts into which each layer is divided per thread, so
+     *  that threads finishing early can take more. */
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    /** Mask for the outcome in the result of solve(BOARD, ...). */
+    private static final int OUTCOME_MASK = (1 << Byte.SIZE) - 1;
+
+    /** The mapped tablebase file. */
+    private final ByteBuffer _data;
+    /** Bits per outcome, indexed by board size. */
+    private final HashMap<Integer, Integer> _bits = new HashMap<>();
+    /** Offsets in _data of the outcomes for each board size. */
+    private final HashMap<Integer, Integer> _offsets = new HashMap<>();
+}
@@ -0,0 +1,123 @@
+package jump61;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static jump61.Side.*;
+import static jump61.Tablebase.*;
+
+/** Unit tests of Tablebases.
+ *  @author Desiree Garcia
+ */
+
+public class TablebaseTest {
+
+    @Test
+    public void testIndex() {
+        assertEquals("2x2 positions", 625, numPositions(2));
+        assertEquals("3x3 positions", 625L * 2401 * 9, numPositions(3));
+        assertTrue("4x4 positions", numPositions(4) > MAX_POSITIONS);
+        Board B = new Board(3);
+        assertEquals("empty board", 0, index(B));
+        B.set(1, 1, 2, RED);
+        assertEquals("one red square", 2, index(B));
+        B.set(1, 2, 3, BLUE);
+        assertEquals("and a blue one", 2 + 5 * (3 + 3), index(B));
+    }
+
+    @Test
+    public void testSolve() {
+        byte[] outcomes = solve(2, 2);
+        assertEquals("positions", 625, outcomes.length);
+        checkPositions(new Board(2), (b) -> outcomes[index(b)]);
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        TreeMap<Integer, byte[]> sections = new TreeMap<>();
+        sections.put(2, solve(2, 1));
+        File file = File.createTempFile("tablebase", ".dat");
+        try {
+            write(file.getPath(), sections);
+            Tablebase tablebase = open(file.getPath());
+            assertTrue("covers 2x2", tablebase.covers(2));
+            assertFalse("covers 3x3", tablebase.covers(3));
+            assertEquals("3x3 position", MISS, tablebase.probe(new Board(3)));
+            checkPositions(new Board(2), tablebase::probe);
+            Board B = new Board(2);
+            while (B.getWinner() == null) {
+                int value = tablebase.probe(B);
+                int move = tablebase.bestMove(B);
+                assertTrue("legal move", B.isLegal(B.whoseMove(), move));
+                B.addSpot(B.whoseMove(), move);
+                if (B.getWinner() == null) {
+                    int reply = tablebase.probe(B);
+                    assertEquals("winner", wins(value), !wins(reply));
+                    assertEquals("distance", distance(value) - 1,
+                                 distance(reply));
+                } else {
+                    assertEquals("won in one", outcome(true, 1), value);
+                }
+            }
+            assertEquals("game over", -1, tablebase.bestMove(B));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = GameException.class)
+    public void testTooBig() {
+        solve(4, 1);
+    }
+
+    /** Check that OUTCOME gives the same outcome as a full search for B
+     *  and every position reachable from it, other than won positions
+     *  left with overfull squares by a cascade. */
+    private static void checkPositions(Board B,
+                                       ToIntFunction<Board> outcome) {
+        if (B.getWinner() != null) {
+            if (index(B) >= 0) {
+                assertEquals(B.toString(), search(B), outcome.applyAsInt(B));
+            }
+        } else {
+            assertEquals(B.toString(), search(B), outcome.applyAsInt(B));
+            for (int n = 0; n < B.size() * B.size(); n += 1) {
+                if (B.isLegal(B.whoseMove(), n)) {
+                    B.addSpot(B.whoseMove(), n);
+                    checkPositions(B, outcome);
+                    B.undo();
+                }
+            }
+        }
+    }
+
+    /** Return the outcome of B found by searching its game tree. */
+    private static int search(Board B) {
+        if (B.getWinner() != null) {
+            return outcome(B.getWinner() == B.whoseMove(), 0);
+        }
+        int best = -1;
+        for (int n = 0; n < B.size() * B.size(); n += 1) {
+            if (B.isLegal(B.whoseMove(), n)) {
+                B.addSpot(B.whoseMove(), n);
+                int reply = search(B);
+                B.undo();
+                int value = outcome(!wins(reply), distance(reply) + 1);
+                if (best == -1
+                    || (wins(value) && (!wins(best)
+                                        || distance(value) < distance(best)))
+                    || (!wins(value) && !wins(best)
+                        && distance(value) > distance(best))) {
+                    best = value;
+                }
+            }
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,339 @@
+package jump61;
+
+import java.util.Arrays;
+
+import static jump61.GameException.error;
+
+/** The arrangement of the squares of an N x N board: which squares are
+ *  neighbors of which, and so how many spots each can hold before it
+ *  jumps.  The squares are always numbered in row-major order, as
+ *  described in Board, but their neighbors depend on the Kind of
+ *  topology: the usual square grid, a grid whose edges wrap around (a
+ *  torus), a grid of hexagons, or an arbitrary graph.
+ *
+ *  A Topology is immutable.  There is one of each kind (other than
+ *  GRAPH) per board size, shared by every Board with that arrangement,
+ *  so that creating or copying a Board does not rebuild its neighbor
+ *  tables.  Neighbors are kept in "compressed sparse row" form: the
+ *  neighbors of square #N are neighborList()[neighborStart()[N]] through
+ *  neighborList()[neighborStart()[N + 1] - 1].  Whatever the kind, the
+ *  jump loop thus iterates over the same flat arrays, with neither
+ *  allocation, boundary tests, nor calls to kind-specific code.  For
+ *  sizes up to Board.BITBOARD_SIZE, a Topology also holds the masks
+ *  Board uses in its bitboards.
+ *  @author Desiree Garcia
+ */
+final class Topology {
+
+    /** The kinds of Topology. */
+    enum Kind {
+        /** A square grid: neighbors share an edge. */
+        GRID,
+        /** A square grid whose top and bottom rows, and left and right
+         *  columns, are also adjacent. */
+        TORUS,
+        /** A rhombus of hexagons: square R:C is adjacent to R:C-1,
+         *  R:C+1, R-1:C, R-1:C+1, R+1:C-1, and R+1:C. */
+        HEX,
+        /** Any undirected graph, given as lists of neighbors. */
+        GRAPH;
+    }
+
+    /** Largest number of neighbors of one square.  A square joins a
+     *  cascade's queue holding at most one spot more than it has
+     *  neighbors, and until it jumps, each of its neighbors can jump at
+     *  most once more, giving it a spot each.  Since neighbors are
+     *  mutual, it thus never holds more than twice this number plus one
+     *  spots, which fits in Board's packed squares. */
+    static final int MAX_DEGREE = Board.MAX_SPOTS / 2;
+
+    /** Returns the Topology of N x N square grids. */
+    static Topology of(int N) {
+        return of(Kind.GRID, N);
+    }
+
+    /** Returns the Topology of N x N boards of kind KIND, other than
+     *  GRAPH. */
+    static synchronized Topology of(Kind kind, int N) {
+        if (kind == Kind.GRAPH) {
+            throw error("graph topologies need neighbor lists");
+        }
+        Topology[] cache = _cache[kind.ordinal()];
+        if (cache[N] == null) {
+            int[][] neighbors = new int[N * N][];
+            for (int n = 0; n < N * N; n += 1) {
+                neighbors[n] = neighbors(kind, N, n / N, n % N);
+            }
+            cache[N] = new Topology(kind, N, neighbors);
+        }
+        return cache[N];
+    }
+
+    /** Returns a Topology of kind GRAPH for N x N boards in which the
+     *  neighbors of square #K are NEIGHBORS[K].  Every square must have
+     *  at least one and at most MAX_DEGREE neighbors, none of them itself
+     *  and none listed twice, and must be a neighbor of each of its
+     *  neighbors.  (Otherwise, a square could receive spots from more
+     *  squares than it has neighbors, without bound; see MAX_DEGREE.)
+     *  Every square must be reachable from every other, since a cascade
+     *  ends only when it runs out of overfull squares or wins, which it
+     *  cannot do while the other side holds a square out of its reach. */
+    static Topology graph(int N, int[][] neighbors) {
+        if (N < 1 || neighbors.length != N * N) {
+            throw error("graph must have a list of neighbors for each of"
+                        + " %d squares", N * N);
+        }
+        for (int n = 0; n < N * N; n += 1) {
+            int[] list = neighbors[n];
+            if (list.length < 1 || list.length > MAX_DEGREE) {
+                throw error("square %d must have between 1 and %d"
+                            + " neighbors", n, MAX_DEGREE);
+            }
+            for (int k = 0; k < list.length; k += 1) {
+                if (list[k] < 0 || list[k] >= N * N || list[k] == n) {
+                    throw error("invalid neighbor of square %d: %d", n,
+                                list[k]);
+                }
+                for (int j = 0; j < k; j += 1) {
+                    if (list[j] == list[k]) {
+                        throw error("duplicate neighbor of square %d: %d",
+                                    n, list[k]);
+                    }
+                }
+            }
+        }
+        for (int n = 0; n < N * N; n += 1) {
+            for (int m : neighbors[n]) {
+                boolean mutual = false;
+                for (int k : neighbors[m]) {
+                    mutual |= k == n;
+                }
+                if (!mutual) {
+                    throw error("square %d neighbors square %d, but not"
+                                + " the reverse", n, m);
+                }
+            }
+        }
+        boolean[] reached = new boolean[N * N];
+        int[] queue = new int[N * N];
+        int tail;
+        reached[0] = true;
+        tail = 1;
+        for (int head = 0; head < tail; head += 1) {
+            for (int m : neighbors[queue[head]]) {
+                if (!reached[m]) {
+                    reached[m] = true;
+                    queue[tail] = m;
+                    tail += 1;
+                }
+            }
+        }
+        if (tail < N * N) {
+            throw error("graph is not connected");
+        }
+        return new Topology(Kind.GRAPH, N, neighbors);
+    }
+
+    /** Returns the neighbors of square R:C (counting from 0) of N x N
+     *  boards of kind KIND. */
+    private static int[] neighbors(Kind kind, int N, int r, int c) {
+        int[] dr, dc;
+        if (kind == Kind.HEX) {
+            dr = HEX_ROWS;
+            dc = HEX_COLUMNS;
+        } else {
+            dr = GRID_ROWS;
+            dc = GRID_COLUMNS;
+        }
+        int[] result = new int[dr.length];
+        int k;
+        k = 0;
+        for (int d = 0; d < dr.length; d += 1) {
+            int r1 = r + dr[d], c1 = c + dc[d];
+            if (kind == Kind.TORUS) {
+                r1 = (r1 + N) % N;
+                c1 = (c1 + N) % N;
+            }
+            int n1 = r1 * N + c1;
+            if (0 <= r1 && r1 < N && 0 <= c1 && c1 < N
+                && n1 != r * N + c) {
+                boolean seen = false;
+                for (int j = 0; j < k; j += 1) {
+                    seen |= result[j] == n1;
+                }
+                if (!seen) {
+                    result[k++] = n1;
+                }
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    /** A Topology of kind KIND for N x N boards in which the neighbors of
+     *  square #K are NEIGHBORS[K]. */
+    private Topology(Kind kind, int N, int[][] neighbors) {
+        _kind = kind;
+        _size = N;
+        _neighborStart = new int[N * N + 1];
+        _capacity = new byte[N * N];
+        int total = 0;
+        for (int[] list : neighbors) {
+            total += list.length;
+        }
+        _neighborList = new int[total];
+        int k;
+        k = 0;
+        for (int n = 0; n < N * N; n += 1) {
+            _neighborStart[n] = k;
+            for (int nb : neighbors[n]) {
+                _neighborList[k++] = nb;
+            }
+            _capacity[n] = (byte) neighbors[n].length;
+        }
+        _neighborStart[N * N] = k;
+
+        if (N > Board.BITBOARD_SIZE) {
+            _boardMask = _firstColumn = _lastColumn = 0;
+            _neighborMasks = _capacityPlanes = null;
+            return;
+        }
+        long first, last;
+        first = last = 0;
+        for (int r = 0; r < N; r += 1) {
+            first |= 1L << (r * N);
+            last |= 1L << (r * N + N - 1);
+        }
+        _boardMask = N * N == Long.SIZE ? -1L : (1L << (N * N)) - 1;
+        _firstColumn = first;
+        _lastColumn = last;
+        _neighborMasks = new long[N * N];
+        _capacityPlanes = new long[Board.SPOT_BITS];
+        for (int n = 0; n < N * N; n += 1) {
+            for (int nb : neighbors[n]) {
+                _neighborMasks[n] |= 1L << nb;
+            }
+            for (int p = 0; p < Board.SPOT_BITS; p += 1) {
+                _capacityPlanes[p] |= (long) ((_capacity[n] >>> p) & 1) << n;
+            }
+        }
+    }
+
+    /** Returns my kind. */
+    Kind kind() {
+        return _kind;
+    }
+
+    /** Returns the Topology of my kind for N x N boards.  A GRAPH
+     *  topology can only be "resized" to its own size. */
+    Topology resized(int N) {
+        if (N == _size) {
+            return this;
+        } else if (_kind == Kind.GRAPH) {
+            throw error("cannot change the size of a graph topology");
+        }
+        return of(_kind, N);
+    }
+
+    /** Returns the number of rows and of columns of my boards. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the number of squares on my boards. */
+    int numSquares() {
+        return _capacity.length;
+    }
+
+    /** Returns the number of neighbors of square #N, which is also the
+     *  number of spots it may hold without jumping. */
+    int capacity(int n) {
+        return _capacity[n];
+    }
+
+    /** Returns the starting index in neighborList() of the neighbors of
+     *  each square, followed by the length of neighborList().  The
+     *  result must not be modified. */
+    int[] neighborStart() {
+        return _neighborStart;
+    }
+
+    /** Returns the concatenated lists of neighbors of all squares (see
+     *  neighborStart()).  The result must not be modified. */
+    int[] neighborList() {
+        return _neighborList;
+    }
+
+    /** Returns true iff my boards are small enough to have bitboards. */
+    boolean hasBitboards() {
+        return _neighborMasks != null;
+    }
+
+    /** Returns the mask of all squares.  Requires hasBitboards(). */
+    long boardMask() {
+        return _boardMask;
+    }
+
+    /** Returns the mask of the neighbors of square #N.  Requires
+     *  hasBitboards(). */
+    long neighborMask(int n) {
+        return _neighborMasks[n];
+    }
+
+    /** Returns the mask of squares that are neighbors of some square in
+     *  the mask SQUARES.  On grids, this shifts SQUARES a row up and down
+     *  and a column left and right; otherwise, it combines the neighbor
+     *  masks of the squares in SQUARES.  Requires hasBitboards(). */
+    long neighborMask(long squares) {
+        if (_kind == Kind.GRID) {
+            return ((squares << _size) | (squares >>> _size)
+                    | ((squares & ~_lastColumn) << 1)
+                    | ((squares & ~_firstColumn) >>> 1)) & _boardMask;
+        }
+        long result = 0;
+        for (long m = squares; m != 0; m &= m - 1) {
+            result |= _neighborMasks[Long.numberOfTrailingZeros(m)];
+        }
+        return result;
+    }
+
+    /** Returns the bitplanes of the capacities of all squares: bit N of
+     *  element P is bit P of capacity(N).  Requires hasBitboards().  The
+     *  result must not be modified. */
+    long[] capacityPlanes() {
+        return _capacityPlanes;
+    }
+
+    /** Row and column offsets of the neighbors of a square in grids and
+     *  tori, in the order below, above, right, left. */
+    private static final int[]
+        GRID_ROWS = { 1, -1, 0, 0 },
+        GRID_COLUMNS = { 0, 0, 1, -1 };
+
+    /** Row and column offsets of the neighbors of a hexagon. */
+    private static final int[]
+        HEX_ROWS = { 1, 1, -1, -1, 0, 0 },
+        HEX_COLUMNS = { 0, -1, 0, 1, 1, -1 };
+
+    /** Topologies already created, indexed by kind and size. */
+    private static Topology[][] _cache =
+        new Topology[Kind.values().length][Defaults.MAX_BOARD_SIZE + 1];
+
+    /** My kind. */
+    private final Kind _kind;
+    /** Number of rows and of columns. */
+    private final int _size;
+    /** See neighborStart(). */
+    private final int[] _neighborStart;
+    /** See neighborList(). */
+    private final int[] _neighborList;
+    /** Number of neighbors of each square. */
+    private final byte[] _capacity;
+    /** For sizes with bitboards, the masks of all squares and of those in
+     *  the first and last columns. */
+    private final long _boardMask, _firstColumn, _lastColumn;
+    /** For sizes with bitboards, the mask of neighbors of each square;
+     *  otherwise null. */
+    private final long[] _neighborMasks;
+    /** For sizes with bitboards, see capacityPlanes(); otherwise null. */
+    private final long[] _capacityPlanes;
+}
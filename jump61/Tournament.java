@@ -0,0 +1,289 @@
+package jump61;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ucb.util.CommandArgs;
+
+import static jump61.Side.*;
+import static jump61.GameException.error;
+import static jump61.Utils.*;
+
+/** A headless driver for matches between two automated players, A and
+ *  B, run in parallel within one JVM.  Each game gives each player its
+ *  own Game (and so its own board, transposition table, and time per
+ *  move); the driver relays moves between them.  Players alternate
+ *  colors, and board sizes are taken in rotation from a list.
+ *
+ *  Usage: java jump61.Tournament [--a=SPEC] [--b=SPEC] [--games=N]
+ *                                [--sizes=S1,S2,...] [--parallel=P]
+ *                                [--seed=S] [--book=FILE]
+ *                                [--tablebase=FILE]
+ *  where each SPEC is ENGINE[:MILLIS[:PLAYOUTS]], ENGINE being ai or
+ *  mcts, MILLIS the time per move, and PLAYOUTS the number of mcts
+ *  playouts per move (0 to use MILLIS).  With --book, ai players take
+ *  their moves from the opening book in FILE when they can, and with
+ *  --tablebase, they play perfectly on the board sizes it covers.
+ *  @author Desiree Garcia
+ */
+class Tournament {
+
+    /** Run the match described by ARGS0 (see above) and print the
+     *  results. */
+    public static void main(String[] args0) {
+        CommandArgs args =
+            new CommandArgs("--a=(.+){0,1} --b=(.+){0,1} --games=(\\d+){0,1}"
+                            + " --sizes=(\\d+(,\\d+)*){0,1}"
+                            + " --parallel=(\\d+){0,1} --seed=(\\d+){0,1}"
+                            + " --book=(.+){0,1} --tablebase=(.+){0,1}",
+                            args0);
+        if (!args.ok()) {
+            System.err.println("Usage: java jump61.Tournament [--a=SPEC]"
+                               + " [--b=SPEC] [--games=N] [--sizes=S,...]"
+                               + " [--parallel=P] [--seed=S]"
+                               + " [--book=FILE] [--tablebase=FILE]");
+            System.exit(1);
+        }
+        try {
+            if (args.contains("--book")) {
+                Main.setBook(OpeningBook.open(args.getFirst("--book")));
+            }
+            if (args.contains("--tablebase")) {
+                Main.setTablebase(Tablebase.open(args
+                                                 .getFirst("--tablebase")));
+            }
+            Tournament match =
+                new Tournament(new Engine(option(args, "--a", "ai")),
+                               new Engine(option(args, "--b", "ai")));
+            String[] sizes =
+                option(args, "--sizes", "" + Defaults.BOARD_SIZE).split(",");
+            int[] boardSizes = new int[sizes.length];
+            for (int k = 0; k < sizes.length; k += 1) {
+                boardSizes[k] = toInt(sizes[k]);
+            }
+            match.play(toInt(option(args, "--games", "100")), boardSizes,
+                       toInt(option(args, "--parallel", ""
+                                    + Runtime.getRuntime()
+                                    .availableProcessors())),
+                       toLong(option(args, "--seed", "0")));
+            match.report();
+        } catch (GameException excp) {
+            System.err.println(excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A match between engines A and B. */
+    Tournament(Engine a, Engine b) {
+        _engines = new Engine[] { a, b };
+    }
+
+    /** Play GAMES games, on boards whose sizes rotate through SIZES,
+     *  running up to PARALLEL games at once.  Game #K uses seeds SEED +
+     *  2K and SEED + 2K + 1 for A and B, and A plays Red in even-numbered
+     *  games. */
+    void play(int games, int[] sizes, int parallel, long seed) {
+        ExecutorService pool = Executors.newFixedThreadPool(parallel);
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int k = 0; k < games; k += 1) {
+            int size = sizes[k % sizes.length];
+            boolean aIsRed = k % 2 == 0;
+            long gameSeed = seed + 2L * k;
+            futures.add(pool.submit(() -> playGame(size, aIsRed, gameSeed)));
+        }
+        try {
+            for (Future<Result> future : futures) {
+                record(future.get());
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new Error("game failed", excp);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Play one game on a SIZE x SIZE board, with A playing red iff
+     *  AISRED, and A and B seeded with SEED and SEED + 1.  Return its
+     *  result. */
+    private Result playGame(int size, boolean aIsRed, long seed) {
+        Game[] games = new Game[2];
+        Player[] players = new Player[2];
+        for (int e = 0; e < 2; e += 1) {
+            games[e] = new Game((p) -> null, (b) -> { }, SILENT, false);
+            games[e].setSize(size);
+            Side color = (e == 0) == aIsRed ? RED : BLUE;
+            players[e] = _engines[e].create(games[e], color, seed + e);
+        }
+        Board board = games[0].getBoard();
+        int moves = 0;
+        while (board.getWinner() == null) {
+            int e = (board.whoseMove() == RED) == aIsRed ? 0 : 1;
+            games[e].setMoveTime(_engines[e].millis());
+            String[] move = players[e].getMove().trim().split("\\s+");
+            int r = toInt(move[0]), c = toInt(move[1]);
+            if (!board.isLegal(board.whoseMove(), r, c)) {
+                throw error("illegal move by %s: %d %d", _engines[e], r, c);
+            }
+            games[0].makeMove(r, c);
+            games[1].makeMove(r, c);
+            moves += 1;
+        }
+        boolean aWon = (board.getWinner() == RED) == aIsRed;
+        return new Result(aWon, moves, games[0].searchNodes(),
+                          games[0].searchNanos(), games[1].searchNodes(),
+                          games[1].searchNanos());
+    }
+
+    /** Add RESULT to the totals. */
+    private void record(Result result) {
+        _games += 1;
+        _aWins += result.aWon ? 1 : 0;
+        _moves += result.moves;
+        for (int e = 0; e < 2; e += 1) {
+            _nodes[e] += result.nodes[e];
+            _nanos[e] += result.nanos[e];
+        }
+    }
+
+    /** Print the totals: win rate and Elo difference of A relative to B
+     *  (with 95% confidence intervals), search speeds, and the average
+     *  game length. */
+    void report() {
+        double p = (double) _aWins / _games;
+        double margin = Z95 * Math.sqrt(p * (1 - p) / _games);
+        System.out.printf("%s vs. %s: %d games%n", _engines[0], _engines[1],
+                          _games);
+        System.out.printf("A wins %d (%.1f%% +/- %.1f%%)%n", _aWins,
+                          100 * p, 100 * margin);
+        System.out.printf("Elo(A) - Elo(B) = %s [%s, %s]%n", elo(p),
+                          elo(p - margin), elo(p + margin));
+        for (int e = 0; e < 2; e += 1) {
+            System.out.printf("%s: %s: %.0f nodes/s%n", e == 0 ? "A" : "B",
+                              _engines[e],
+                              _nodes[e] * 1e9 / Math.max(1, _nanos[e]));
+        }
+        System.out.printf("Average game length: %.1f moves%n",
+                          (double) _moves / _games);
+    }
+
+    /** Return the Elo rating difference corresponding to an expected
+     *  score of P, formatted for printing. */
+    static String elo(double p) {
+        if (p <= 0) {
+            return "-inf";
+        } else if (p >= 1) {
+            return "+inf";
+        }
+        return String.format("%+.0f", -400 * Math.log10(1 / p - 1));
+    }
+
+    /** A description of an automated player. */
+    static class Engine {
+
+        /** The engine described by SPEC, of the form
+         *  ENGINE[:MILLIS[:PLAYOUTS]]. */
+        Engine(String spec) {
+            String[] parts = spec.split(":");
+            _spec = spec;
+            _name = parts[0];
+            if (!_name.equals("ai") && !_name.equals("mcts")) {
+                throw error("unknown engine: %s", _name);
+            }
+            try {
+                _millis = parts.length > 1 ? toLong(parts[1])
+                    : Defaults.MOVE_TIME;
+                _playouts = parts.length > 2 ? toInt(parts[2]) : 0;
+            } catch (NumberFormatException excp) {
+                throw error("bad engine description: %s", spec);
+            }
+        }
+
+        /** Return a new player of my kind in GAME, playing COLOR, using
+         *  random seed SEED. */
+        Player create(Game game, Side color, long seed) {
+            if (_name.equals("ai")) {
+                return new AI(game, color, seed);
+            } else {
+                return new MctsAI(game, color, seed, _playouts, true);
+            }
+        }
+
+        /** Return my time per move in milliseconds. */
+        long millis() {
+            return _millis;
+        }
+
+        @Override
+        public String toString() {
+            return _spec;
+        }
+
+        /** My description. */
+        private final String _spec;
+        /** My kind. */
+        private final String _name;
+        /** Time per move. */
+        private final long _millis;
+        /** Playouts per move, for mcts. */
+        private final int _playouts;
+    }
+
+    /** The outcome of one game. */
+    private static class Result {
+
+        /** A result in which A won iff AWON after MOVES moves, A searched
+         *  ANODES positions in ANANOS nanoseconds, and B searched BNODES
+         *  in BNANOS. */
+        Result(boolean aWon, int moves, long aNodes, long aNanos,
+               long bNodes, long bNanos) {
+            this.aWon = aWon;
+            this.moves = moves;
+            this.nodes = new long[] { aNodes, bNodes };
+            this.nanos = new long[] { aNanos, bNanos };
+        }
+
+        /** True iff A won. */
+        private final boolean aWon;
+        /** Length of the game. */
+        private final int moves;
+        /** Positions searched and time spent by A and B. */
+        private final long[] nodes, nanos;
+    }
+
+    /** A Reporter that discards everything. */
+    private static final Reporter SILENT = new Reporter() {
+        @Override
+        public void announceWin(Side side) {
+        }
+
+        @Override
+        public void announceMove(int row, int col) {
+        }
+
+        @Override
+        public void msg(String format, Object... args) {
+        }
+
+        @Override
+        public void err(String format, Object... args) {
+        }
+    };
+
+    /** Normal quantile for a two-sided 95% confidence interval. */
+    private static final double Z95 = 1.96;
+
+    /** Engines A and B. */
+    private final Engine[] _engines;
+    /** Games played, and games won by A. */
+    private int _games, _aWins;
+    /** Total moves in all games. */
+    private long _moves;
+    /** Positions searched by A and B. */
+    private final long[] _nodes = new long[2];
+    /** Time spent searching by A and B, in nanoseconds. */
+    private final long[] _nanos = new long[2];
+}
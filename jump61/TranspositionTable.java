@@ -0,0 +1,162 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** A fixed-size cache of search results, keyed by 64-bit position keys
+ *  (see Board.positionKey).  Each result records the depth to which a
+ *  position was searched, its score, whether that score is exact or a
+ *  bound, and the best move found, all packed into one long.
+ *
+ *  The table holds a power of two number of two-entry buckets.  The
+ *  first entry of a bucket is replaced only by deeper (or newer)
+ *  results; the second is always replaced.  Each entry occupies two
+ *  longs: the data, and the key exclusive-or'ed with the data.  A
+ *  reader accepts an entry only if these agree, so an entry torn by
+ *  concurrent writers reads as a miss, and the table may be shared by
+ *  several searching threads without locking.
+ *  @author Desiree Garcia
+ */
+class TranspositionTable {
+
+    /** Bound types.  EXACT scores are exact; a LOWER bound means the
+     *  search failed high (the true score is at least the stored one),
+     *  and an UPPER bound means it failed low. */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** Number of bytes used by one entry. */
+    static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    /** A table using at most MEGABYTES megabytes (and at least one
+     *  bucket). */
+    TranspositionTable(int megabytes) {
+        long entries = Math.max(2, ((long) megabytes << 20) / ENTRY_BYTES);
+        entries = Math.min(Long.highestOneBit(entries), 1L << 29);
+        _table = new long[(int) entries * 2];
+        _mask = (int) entries / 2 - 1;
+    }
+
+    /** Return the number of entries in this table. */
+    int capacity() {
+        return _table.length / 2;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        Arrays.fill(_table, 0);
+        _generation = 0;
+    }
+
+    /** Mark the start of a new search, so that entries stored by
+     *  earlier searches are preferred for replacement. */
+    void newSearch() {
+        _generation = (_generation + 1) & GENERATION_MASK;
+    }
+
+    /** Return the data stored for KEY, or MISS if there is none.  Use
+     *  depth, bound, score and move to unpack the result. */
+    long probe(long key) {
+        int i = bucket(key);
+        for (int k = i; k < i + BUCKET_LONGS; k += 2) {
+            long data = _table[k];
+            if (data != MISS && (_table[k + 1] ^ data) == key) {
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /** Record that the position with key KEY, searched to DEPTH, has
+     *  SCORE, where BOUND says whether SCORE is EXACT or a LOWER or
+     *  UPPER bound, and that MOVE (a square number, or -1 if unknown) is
+     *  its best move. */
+    void store(long key, int depth, int bound, int score, int move) {
+        int i = bucket(key);
+        long old = _table[i];
+        if (old != MISS && (_table[i + 1] ^ old) != key
+            && generation(old) == _generation && depth(old) > depth) {
+            i += 2;
+        } else if (move < 0 && old != MISS && (_table[i + 1] ^ old) == key) {
+            move = move(old);
+        }
+        long data = pack(depth, bound, score, move, _generation);
+        _table[i] = data;
+        _table[i + 1] = key ^ data;
+    }
+
+    /** Return the packed representation of an entry for DEPTH, BOUND,
+     *  SCORE, MOVE, and GENERATION.  Never returns MISS. */
+    static long pack(int depth, int bound, int score, int move,
+                     int generation) {
+        assert 0 <= depth && depth <= DEPTH_MASK;
+        assert EXACT <= bound && bound <= UPPER;
+        assert -1 <= move && move < MOVE_MASK;
+        return ((long) score << SCORE_SHIFT)
+            | ((long) generation << GENERATION_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) depth << DEPTH_SHIFT)
+            | (move + 1);
+    }
+
+    /** Return the search depth recorded in DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the bound type (EXACT, LOWER, or UPPER) recorded in
+     *  DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the score recorded in DATA. */
+    static int score(long data) {
+        return (int) (data >> SCORE_SHIFT);
+    }
+
+    /** Return the best move recorded in DATA, or -1 if none. */
+    static int move(long data) {
+        return (int) (data & MOVE_MASK) - 1;
+    }
+
+    /** Return the search generation recorded in DATA. */
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    /** Return the index in _table of the bucket for KEY. */
+    private int bucket(long key) {
+        return ((int) (key >>> 32) & _mask) * BUCKET_LONGS;
+    }
+
+    /** Value returned by probe when there is no entry. */
+    static final long MISS = 0;
+
+    /** Layout of a packed entry: from least significant bit, the move
+     *  plus one, the depth, the bound type, the generation, and the
+     *  (signed) score. */
+    private static final int
+        MOVE_BITS = 22,
+        DEPTH_SHIFT = MOVE_BITS, DEPTH_MASK = 0x3f,
+        BOUND_SHIFT = DEPTH_SHIFT + 6, BOUND_MASK = 0x3,
+        GENERATION_SHIFT = BOUND_SHIFT + 2, GENERATION_MASK = 0x3f,
+        SCORE_SHIFT = GENERATION_SHIFT + 6,
+        MOVE_MASK = (1 << MOVE_BITS) - 1;
+
+    /** Largest magnitude of a storable score. */
+    static final int MAX_SCORE = (1 << (Long.SIZE - SCORE_SHIFT - 1)) - 1;
+
+    /** Largest storable depth. */
+    static final int MAX_DEPTH = DEPTH_MASK;
+
+    /** Number of longs in one bucket. */
+    private static final int BUCKET_LONGS = 4;
+
+    /** Entries, as pairs (data, key ^ data), in two-entry buckets. */
+    private final long[] _table;
+
+    /** Mask selecting a bucket number from a key. */
+    private final int _mask;
+
+    /** Current search generation. */
+    private int _generation;
+}
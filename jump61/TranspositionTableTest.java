@@ -0,0 +1,60 @@
+package jump61;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static jump61.TranspositionTable.*;
+
+/** Unit tests of TranspositionTables.
+ *  @author Desiree Garcia
+ */
+
+public class TranspositionTableTest {
+
+    @Test
+    public void testPacking() {
+        long data = pack(MAX_DEPTH, UPPER, -MAX_SCORE, 12345, 7);
+        assertNotEquals("packed entry must not be a miss", MISS, data);
+        assertEquals("wrong depth", MAX_DEPTH, depth(data));
+        assertEquals("wrong bound", UPPER, bound(data));
+        assertEquals("wrong score", -MAX_SCORE, score(data));
+        assertEquals("wrong move", 12345, move(data));
+        assertEquals("missing move", -1, move(pack(0, EXACT, 0, -1, 0)));
+    }
+
+    @Test
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals("capacity", (1 << 20) / ENTRY_BYTES, table.capacity());
+        long key = 0x123456789abcdefL;
+        assertEquals("empty table", MISS, table.probe(key));
+        table.store(key, 3, LOWER, 42, 5);
+        long data = table.probe(key);
+        assertEquals("wrong score", 42, score(data));
+        assertEquals("wrong move", 5, move(data));
+        assertEquals("different key", MISS, table.probe(key + 1));
+        table.store(key, 4, EXACT, 17, -1);
+        assertEquals("move should be kept", 5, move(table.probe(key)));
+        table.clear();
+        assertEquals("cleared table", MISS, table.probe(key));
+    }
+
+    @Test
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(0);
+        long deep = 1L, shallow = 2L, other = 3L;
+        table.store(deep, 10, EXACT, 1, 0);
+        table.store(shallow, 2, EXACT, 2, 0);
+        assertEquals("deep entry must survive", 10,
+                     depth(table.probe(deep)));
+        table.store(other, 1, EXACT, 3, 0);
+        assertEquals("deep entry must survive", 10,
+                     depth(table.probe(deep)));
+        assertEquals("second entry is always replaced", MISS,
+                     table.probe(shallow));
+        table.newSearch();
+        table.store(shallow, 1, EXACT, 2, 0);
+        assertEquals("stale entry is replaced", MISS, table.probe(deep));
+    }
+
+}
@@ -8,6 +8,8 @@ import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.PrintStream;
 
+import ucb.util.CommandArgs;
+
 /** Miscellaneous utilties.
  *  @author P. N. Hilfinger */
 
@@ -25,6 +27,11 @@ class Utils {
         return Long.parseLong(numeral);
     }
 
+    /** Return the value of option NAME in ARGS, or DEFLT if absent. */
+    static String option(CommandArgs args, String name, String deflt) {
+        return args.contains(name) ? args.getFirst(name) : deflt;
+    }
+
     /** Set the message level for this package to LEVEL.  The debug() routine
      *  (below) will print any message with a positive level that is <= LEVEL.
      *  Initially, the level is 0. */
@@ -9,4 +9,12 @@ interface View {
     /** Update the current view of the game according to BOARD. */
     void update(Board board);
 
+    /** Update the current view of the game according to BOARD, given
+     *  that only the squares whose numbers are in CHANGED differ from
+     *  the board in the previous update.  By default, redraws the whole
+     *  board. */
+    default void update(Board board, int[] changed) {
+        update(board);
+    }
+
 }
@@ -0,0 +1,93 @@
+package jump61;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/** Delivers the changes to a Board to a View in batches, at a bounded
+ *  rate, from a background thread.
+ *
+ *  Whoever changes the board calls changed() afterwards.  That merely
+ *  schedules a delivery, unless one is already pending, so it costs
+ *  almost nothing however fast the board changes.  A delivery takes a
+ *  snapshot of the board (see Board.snapshot) and the squares changed
+ *  since the last delivery (see Board.takeChanges), and passes both to
+ *  the view; every change made while a delivery is pending is thus
+ *  coalesced into it.  Deliveries are at least a given interval apart,
+ *  and none is made if the board's version() has not changed since the
+ *  last.  The view therefore never holds up play, and sees at most one
+ *  update per interval, however fast the moves.
+ *
+ *  Deliveries read the board from another thread, so whoever changes
+ *  the board must do so while holding its lock (synchronized on the
+ *  board).  All ViewUpdaters share one daemon thread.
+ *  @author Desiree Garcia
+ */
+class ViewUpdater {
+
+    /** An updater that delivers changes to BOARD to VIEW at most once
+     *  every MILLIS milliseconds. */
+    ViewUpdater(Board board, View view, long millis) {
+        _board = board;
+        _view = view;
+        _interval = millis * 1_000_000;
+        _lastDelivery = System.nanoTime() - _interval;
+    }
+
+    /** Note that my board has changed, scheduling a delivery to my view
+     *  if none is pending. */
+    void changed() {
+        if (_pending.compareAndSet(false, true)) {
+            long delay = _lastDelivery + _interval - System.nanoTime();
+            DELIVERY.schedule(this::deliver, Math.max(0, delay),
+                              NANOSECONDS);
+        }
+    }
+
+    /** Pass a snapshot of my board and the squares changed since the
+     *  last delivery (all of them, the first time) to my view, if it has
+     *  changed. */
+    private void deliver() {
+        _pending.set(false);
+        Board snapshot;
+        int[] changes;
+        synchronized (_board) {
+            if (_board.version() == _version) {
+                return;
+            }
+            boolean first = _version == -1;
+            _version = _board.version();
+            snapshot = _board.snapshot();
+            changes = _board.takeChanges();
+            if (first) {
+                _board.trackChanges(true);
+            }
+        }
+        _lastDelivery = System.nanoTime();
+        _view.update(snapshot, changes);
+    }
+
+    /** The thread that makes all deliveries. */
+    private static final ScheduledExecutorService DELIVERY =
+        Executors.newSingleThreadScheduledExecutor((r) -> {
+            Thread thread = new Thread(r, "jump61 view updates");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    /** The board whose changes I deliver. */
+    private final Board _board;
+    /** The view to which I deliver them. */
+    private final View _view;
+    /** Minimum time between deliveries, in nanoseconds. */
+    private final long _interval;
+    /** True iff a delivery has been scheduled but has not yet started. */
+    private final AtomicBoolean _pending = new AtomicBoolean();
+    /** Value of System.nanoTime() at the last delivery. */
+    private volatile long _lastDelivery;
+    /** The version() of my board at the last delivery (accessed only by
+     *  the delivering thread). */
+    private long _version = -1;
+}